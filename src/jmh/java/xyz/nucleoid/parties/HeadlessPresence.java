@@ -0,0 +1,52 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stands in for the player list of a server, tracking which simulated players are logged in as its driver reports
+ * them. Simulated players have no entities, so {@link #getPlayer} always returns {@code null}. Every path that needs
+ * an entity is left out of a headless run: party messages and the notifier batching, the invite texts sent on login,
+ * the online member cache of a party, and anything sent to the owner. Such runs measure the bookkeeping of parties,
+ * invites and reconnect grace only.
+ */
+final class HeadlessPresence implements PartyPresence {
+    private final Set<UUID> online = new ObjectOpenHashSet<>();
+
+    void login(PlayerRef player) {
+        this.online.add(player.id());
+    }
+
+    void logout(PlayerRef player) {
+        this.online.remove(player.id());
+    }
+
+    @Override
+    @Nullable
+    public MinecraftServer getServer() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public ServerPlayerEntity getPlayer(UUID id) {
+        return null;
+    }
+
+    @Override
+    public boolean isOnline(UUID id) {
+        return this.online.contains(id);
+    }
+
+    @Override
+    public Text getName(PlayerRef player) {
+        return Text.literal(player.id().toString());
+    }
+}
@@ -0,0 +1,64 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LobbyFinalizeBenchmark {
+    private static final int PARTY_SIZE = 4;
+
+    @Param({"16", "100", "500"})
+    public int players;
+
+    /**
+     * The fraction of lobby players that belong to a party.
+     */
+    @Param({"0.0", "0.5", "1.0"})
+    public double partyDensity;
+
+    private List<UUID> lobby;
+    private Map<UUID, Object> playerToParty;
+
+    @Setup
+    public void setup() {
+        var random = new Random(0);
+        this.lobby = new ObjectArrayList<>(this.players);
+        this.playerToParty = new Object2ObjectOpenHashMap<>();
+
+        int partied = (int) (this.players * this.partyDensity);
+        Object party = null;
+        for (int i = 0; i < this.players; i++) {
+            var player = new UUID(random.nextLong(), random.nextLong());
+            this.lobby.add(player);
+
+            if (i < partied) {
+                if (i % PARTY_SIZE == 0) {
+                    party = new Object();
+                }
+                this.playerToParty.put(player, party);
+            }
+        }
+
+        // party members do not join the lobby next to each other
+        Collections.shuffle(this.lobby, random);
+    }
+
+    @Benchmark
+    public void groupByParty(Blackhole blackhole) {
+        PartyManager.groupByParty(this.lobby, this.playerToParty::get, blackhole::consume);
+    }
+}
@@ -0,0 +1,308 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a {@link PartyJournal} captured on a server into a fresh headless {@link PartyManager}, ticking it as often as
+ * the server did, and checks that every operation has the same outcome as when it was recorded. Parties get new UUIDs
+ * when replayed, so they are matched up with the recorded ones through the results of the operations that created
+ * them.
+ * <p>
+ * Run with {@code gradlew replay -Preplay.args="<journal> [speed=<n>]"}, where a speed of 1 replays at the original 20
+ * ticks per second, higher speeds replay that many times faster and the default of 0 replays as fast as possible.
+ */
+public final class PartyJournalReplayer {
+    private static final PartyError[] ERRORS = PartyError.values();
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private final ByteBuffer buffer;
+    private final PartyManager manager;
+    private final HeadlessPresence presence = new HeadlessPresence();
+    private final long tickNanos;
+
+    // the replayed party of every recorded party UUID
+    private final Object2ObjectMap<UUID, Party> parties = new Object2ObjectOpenHashMap<>();
+
+    private int tick;
+    private long startNanos;
+    private long events;
+    private long operations;
+    private long mismatches;
+
+    private PartyJournalReplayer(ByteBuffer buffer, double speed) throws IOException {
+        this.buffer = buffer;
+        this.tickNanos = speed > 0 ? (long) (50_000_000 / speed) : 0;
+
+        if (buffer.getInt() != PartyJournal.MAGIC) {
+            throw new IOException("Not a party journal");
+        }
+        int version = PartyStorage.getVarInt(buffer);
+        if (version != PartyJournal.VERSION) {
+            throw new IOException("Unsupported party journal version " + version);
+        }
+
+        // replay with the settings of the recording server, as they decide when invites and offline members expire
+        var defaults = PartyConfig.DEFAULT;
+        var config = new PartyConfig(
+                PartyStorage.getVarInt(buffer),
+                PartyStorage.getVarInt(buffer),
+                PartyStorage.getVarInt(buffer),
+                Map.of(),
+                defaults.listPageSize(),
+                new PartyConfig.EventLog(false, 1, Map.of()),
+                new PartyConfig.Persistence(false, defaults.persistence().saveIntervalTicks()),
+                defaults.queue(),
+                defaults.teamBalancing(),
+                defaults.federation(),
+                defaults.journal(),
+                // only commands are rate limited, and the journal records the operations they led to
+                defaults.rateLimit(),
+                // reclaimed parties are replayed from the journal, since the recording server may sweep differently
+                new PartyConfig.Sweep(0, defaults.sweep().partiesPerTick()),
+                // run deferred work within the tick it was due, as the budget of the recording server depended on its timing
+                new PartyConfig.Scheduler(0, defaults.scheduler().chunkSize())
+        );
+        this.manager = PartyManager.headless(this.presence, config);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Expected the path of a journal to replay");
+        }
+
+        double speed = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("speed=")) {
+                speed = Double.parseDouble(args[i].substring("speed=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        try (var channel = FileChannel.open(Path.of(args[0]), StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var replayer = new PartyJournalReplayer(buffer, speed);
+            try {
+                replayer.run();
+            } finally {
+                replayer.manager.close();
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        this.startNanos = System.nanoTime();
+
+        while (this.buffer.hasRemaining()) {
+            try {
+                int kind = this.buffer.get() & 0xFF;
+                if (kind >= PartyJournal.Kind.VALUES.length) {
+                    throw new IOException("Unknown journal event " + kind + " at byte " + (this.buffer.position() - 1));
+                }
+                this.advanceTo(this.tick + PartyStorage.getVarInt(this.buffer));
+                this.replay(PartyJournal.Kind.VALUES[kind]);
+                this.events++;
+            } catch (BufferUnderflowException e) {
+                // the server stopped while the last event was being written
+                System.out.println("The journal ends in a truncated event, which was skipped");
+                break;
+            }
+        }
+
+        this.report(System.nanoTime() - this.startNanos);
+    }
+
+    private void advanceTo(int tick) {
+        while (this.tick < tick) {
+            this.manager.tick();
+            this.tick++;
+
+            if (this.tickNanos > 0) {
+                long wait = this.startNanos + this.tick * this.tickNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+    }
+
+    private void replay(PartyJournal.Kind kind) throws IOException {
+        var manager = this.manager;
+        switch (kind) {
+            case RESTORE -> {
+                var entry = PartyStorage.getEntry(this.buffer, PartyStorage.VERSION);
+                var party = manager.restoreParty(entry);
+                if (party != null) {
+                    this.parties.put(entry.uuid(), party);
+                }
+            }
+            case RELEASE -> {
+                var party = this.parties.get(PartyStorage.getUuid(this.buffer));
+                if (party != null) {
+                    manager.releaseParty(party.getUuid());
+                }
+            }
+            case RECLAIM -> {
+                var party = this.parties.get(PartyStorage.getUuid(this.buffer));
+                if (party != null && manager.getParty(party.getUuid()) == party) {
+                    manager.reclaimParty(party);
+                }
+            }
+            case JOIN -> {
+                var player = this.readPlayer();
+                this.presence.login(player);
+                manager.onPlayerJoin(player, null);
+            }
+            case DISCONNECT -> {
+                var player = this.readPlayer();
+                this.presence.logout(player);
+                manager.onPlayerLogOut(player, this.presence.getName(player));
+            }
+            case INVITE -> this.verify(kind, manager.invitePlayer(this.readPlayer(), this.readPlayer()));
+            case KICK -> this.verify(kind, manager.kickPlayer(this.readPlayer(), this.readPlayer()));
+            case TRANSFER -> this.verify(kind, manager.transferParty(this.readPlayer(), this.readPlayer()));
+            case ACCEPT -> this.verify(kind, manager.acceptInvite(this.readPlayer(), this.readParty()));
+            case ADD -> this.verify(kind, manager.addPlayer(this.readPlayer(), this.readParty()));
+            case LEAVE -> this.verify(kind, manager.leaveParty(this.readPlayer()));
+            case DISBAND -> this.verify(kind, manager.disband(this.readPlayer()));
+            case UNQUEUE -> this.verify(kind, manager.unqueueParty(this.readPlayer()));
+            case REMOVE -> this.verify(kind, manager.removePlayer(this.readPlayer()));
+            case QUEUE -> this.verify(kind, manager.queueParty(this.readPlayer(), Identifier.of(this.readString())));
+            case SET_CAPACITY -> {
+                var party = this.readParty();
+                this.verify(kind, manager.setCapacity(party, PartyStorage.getVarInt(this.buffer)));
+            }
+            case BULK_CREATE -> {
+                int groups = PartyStorage.getVarInt(this.buffer);
+                var roster = new ObjectArrayList<List<PlayerRef>>(groups);
+                for (int i = 0; i < groups; i++) {
+                    roster.add(this.readPlayers());
+                }
+                this.verify(kind, manager.createParties(roster));
+            }
+            case BULK_MOVE -> {
+                var players = this.readPlayers();
+                this.verify(kind, manager.movePlayers(players, this.readParty()));
+            }
+            case BULK_DISBAND -> this.verify(kind, manager.disbandParties(this.readPlayers()));
+            case GAME_JOIN -> {
+                var party = manager.getOwnParty(this.readPlayer());
+                int expected = PartyStorage.getVarInt(this.buffer);
+                this.compare(kind, expected, party != null ? party.getMembers().size() : 0);
+            }
+            case LOBBY_FINALIZE -> {
+                var players = this.readPlayers();
+                int expected = PartyStorage.getVarInt(this.buffer);
+                int[] groups = new int[1];
+                PartyManager.groupByParty(players, manager::getParty, group -> groups[0]++);
+                this.compare(kind, expected, groups[0]);
+            }
+        }
+    }
+
+    private void verify(PartyJournal.Kind kind, PartyResult result) throws IOException {
+        var expected = this.readError();
+        var party = this.readPartyUuid();
+        if (party != null && result.party() != null) {
+            this.parties.putIfAbsent(party, result.party());
+        }
+        this.compare(kind, expected, result.error());
+    }
+
+    private void verify(PartyJournal.Kind kind, PartyBatchResult result) throws IOException {
+        var expected = this.readError();
+        int count = PartyStorage.getVarInt(this.buffer);
+        var parties = result.parties();
+        for (int i = 0; i < count; i++) {
+            var party = PartyStorage.getUuid(this.buffer);
+            if (i < parties.size()) {
+                this.parties.putIfAbsent(party, parties.get(i));
+            }
+        }
+        this.compare(kind, expected, result.error());
+    }
+
+    private void compare(PartyJournal.Kind kind, @Nullable Object expected, @Nullable Object actual) {
+        this.operations++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            if (this.mismatches++ < MAX_REPORTED_MISMATCHES) {
+                System.out.printf(Locale.ROOT, "tick %d, %s: recorded %s but replayed %s%n", this.tick, kind, outcome(expected), outcome(actual));
+            }
+        }
+    }
+
+    private static String outcome(@Nullable Object outcome) {
+        return outcome != null ? outcome.toString() : "ok";
+    }
+
+    private PlayerRef readPlayer() {
+        return new PlayerRef(PartyStorage.getUuid(this.buffer));
+    }
+
+    private List<PlayerRef> readPlayers() throws IOException {
+        int count = PartyStorage.getVarInt(this.buffer);
+        var players = new ObjectArrayList<PlayerRef>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(this.readPlayer());
+        }
+        return players;
+    }
+
+    @Nullable
+    private UUID readPartyUuid() {
+        return this.buffer.get() != 0 ? PartyStorage.getUuid(this.buffer) : null;
+    }
+
+    @Nullable
+    private Party readParty() {
+        var uuid = this.readPartyUuid();
+        return uuid != null ? this.parties.get(uuid) : null;
+    }
+
+    @Nullable
+    private PartyError readError() throws IOException {
+        int error = this.buffer.get() & 0xFF;
+        if (error > ERRORS.length) {
+            throw new IOException("Unknown party error " + error);
+        }
+        return error != 0 ? ERRORS[error - 1] : null;
+    }
+
+    private String readString() throws IOException {
+        var bytes = new byte[PartyStorage.getVarInt(this.buffer)];
+        this.buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void report(long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf(Locale.ROOT, "replayed %d events over %d ticks in %.3f s (%,.0f events/s)%n",
+                this.events, this.tick, seconds, this.events / seconds);
+        System.out.printf(Locale.ROOT, "%d of %d outcomes differ from the recording%n%n", this.mismatches, this.operations);
+
+        System.out.printf(Locale.ROOT, "%-24s %-22s %10s %10s %10s %10s%n", "operation", "outcome", "count", "p50 (us)", "p99 (us)", "max (us)");
+        this.manager.getMetrics().forEach(stat -> System.out.printf(
+                Locale.ROOT, "%-24s %-22s %10d %10.2f %10.2f %10.2f%n",
+                stat.operation().asString(), stat.outcome(), stat.count(),
+                stat.quantile(0.5) / 1e3, stat.quantile(0.99) / 1e3, stat.maxNanos() / 1e3
+        ));
+    }
+}
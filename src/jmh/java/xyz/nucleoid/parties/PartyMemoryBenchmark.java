@@ -0,0 +1,120 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Reports the retained heap of the party storage for a number of simulated players, once with the compact layout used
+ * by {@link PartyManager} and once with the previous layout of one {@link UUID} keyed hash map and hash sets of
+ * {@link PlayerRef} per party. Every player is in a party of between one and eight members.
+ * <p>
+ * Not a JMH benchmark, since JMH measures time; run with {@code gradlew memoryBenchmark}.
+ */
+public final class PartyMemoryBenchmark {
+    private static final int[] PLAYERS = { 10_000, 100_000, 1_000_000 };
+    private static final int MAX_PARTY_SIZE = 8;
+
+    public static void main(String[] args) {
+        System.out.printf("%-10s %-8s %10s %10s %12s %14s %14s%n", "players", "layout", "parties", "members", "heap (KiB)", "bytes/party", "bytes/member");
+
+        for (int players : PLAYERS) {
+            var sizes = partySizes(players);
+            report(players, "compact", sizes, PartyMemoryBenchmark::compact);
+            report(players, "legacy", sizes, PartyMemoryBenchmark::legacy);
+        }
+    }
+
+    private static int[] partySizes(int players) {
+        var random = new Random(0);
+        var sizes = new int[players];
+        int parties = 0;
+        for (int remaining = players; remaining > 0; ) {
+            int size = Math.min(remaining, 1 + random.nextInt(MAX_PARTY_SIZE));
+            sizes[parties++] = size;
+            remaining -= size;
+        }
+        return Arrays.copyOf(sizes, parties);
+    }
+
+    private static void report(int players, String layout, int[] sizes, IntFunction<Object> build) {
+        // build once beforehand so that class loading and interning are not counted
+        build.apply(0);
+
+        long before = usedHeap();
+        var storage = build.apply(players);
+        long bytes = usedHeap() - before;
+        Reference.reachabilityFence(storage);
+
+        System.out.printf(
+                "%-10d %-8s %10d %10d %12d %14.1f %14.1f%n",
+                players, layout, sizes.length, players, bytes / 1024,
+                (double) bytes / sizes.length, (double) bytes / players
+        );
+    }
+
+    private static Object compact(int players) {
+        var random = new Random(1);
+        var playerToParty = new UuidMap<Party>();
+        var parties = new Object2ObjectOpenHashMap<UUID, Party>();
+
+        for (int size : partySizes(players)) {
+            var owner = new PlayerRef(randomUuid(random));
+            var party = new Party(null, owner, MAX_PARTY_SIZE);
+            for (int i = 1; i < size; i++) {
+                party.add(new PlayerRef(randomUuid(random)));
+            }
+            parties.put(party.getUuid(), party);
+            for (var member : party.getMembers()) {
+                playerToParty.put(member.id(), party);
+            }
+        }
+
+        return new Object[] { playerToParty, parties };
+    }
+
+    private static Object legacy(int players) {
+        var random = new Random(1);
+        var playerToParty = new Object2ObjectOpenHashMap<UUID, LegacyParty>();
+        var parties = new Object2ObjectOpenHashMap<UUID, LegacyParty>();
+
+        for (int size : partySizes(players)) {
+            var party = new LegacyParty();
+            for (int i = 0; i < size; i++) {
+                var member = new PlayerRef(randomUuid(random));
+                party.members.add(member);
+                playerToParty.put(member.id(), party);
+            }
+            parties.put(party.uuid, party);
+        }
+
+        return new Object[] { playerToParty, parties };
+    }
+
+    private static UUID randomUuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    private static long usedHeap() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class LegacyParty {
+        final UUID uuid = UUID.randomUUID();
+        final Set<PlayerRef> members = new ObjectLinkedOpenHashSet<>();
+        final Set<PlayerRef> pendingMembers = new ObjectOpenHashSet<>();
+    }
+}
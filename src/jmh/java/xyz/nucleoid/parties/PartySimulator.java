@@ -0,0 +1,311 @@
+package xyz.nucleoid.parties;
+
+import com.sun.management.ThreadMXBean;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import net.minecraft.text.Text;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Drives a headless {@link PartyManager} with a seeded workload of invites, accepts, kicks, leaves, disbands, logins
+ * and logouts, and reports the throughput, the latency quantiles recorded by {@link PartyMetrics} and the allocation
+ * rate. The same seed and options always issue the same operations, so runs can be compared across changes.
+ * Simulated players have no entities, so the paths that message players or resolve their entities are not measured;
+ * see {@link HeadlessPresence}.
+ * <p>
+ * Options are given as {@code key=value} arguments, for example through
+ * {@code gradlew simulate -Psimulate.args="players=100000 rate=2000"}:
+ * <ul>
+ *     <li>{@code players}: how many simulated players there are</li>
+ *     <li>{@code online}: the fraction of them that is online at the start</li>
+ *     <li>{@code ticks}: how many ticks are measured, after {@code warmup} ticks on a separate manager</li>
+ *     <li>{@code rate}: how many operations are issued every tick</li>
+ *     <li>{@code seed}: the seed of the workload</li>
+ *     <li>{@code capacity}, {@code grace}, {@code ttl}: the party capacity, reconnect grace and invite lifetime</li>
+ *     <li>{@code invite}, {@code accept}, {@code kick}, {@code leave}, {@code disband}, {@code login},
+ *     {@code logout}: the relative weight of each operation</li>
+ * </ul>
+ */
+public final class PartySimulator {
+    private final Options options;
+    private final Random random;
+    private final HeadlessPresence presence = new HeadlessPresence();
+    private final PartyManager manager;
+
+    private final PlayerRef[] players;
+    private final Text[] names;
+    // the online players are kept at the front of this array, so that one can be picked in constant time
+    private final int[] byPresence;
+    private final int[] presenceIndex;
+    private int onlineCount;
+
+    private final Operation[] operations = Operation.values();
+    private final int[] cumulativeWeights;
+
+    private PartySimulator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed);
+
+        var config = new PartyConfig(
+                options.grace,
+                options.ttl,
+                options.capacity,
+                Map.of(),
+                PartyConfig.DEFAULT.listPageSize(),
+                new PartyConfig.EventLog(false, 1, Map.of()),
+                new PartyConfig.Persistence(false, PartyConfig.DEFAULT.persistence().saveIntervalTicks()),
+                PartyConfig.DEFAULT.queue(),
+                PartyConfig.DEFAULT.teamBalancing(),
+                PartyConfig.DEFAULT.federation(),
+                PartyConfig.DEFAULT.journal(),
+                PartyConfig.DEFAULT.rateLimit(),
+                PartyConfig.DEFAULT.sweep(),
+                // a wall-clock budget would let the timing of the machine decide how much deferred work runs each tick
+                new PartyConfig.Scheduler(0, PartyConfig.DEFAULT.scheduler().chunkSize())
+        );
+        this.manager = PartyManager.headless(this.presence, config);
+
+        this.players = new PlayerRef[options.players];
+        this.names = new Text[options.players];
+        this.byPresence = new int[options.players];
+        this.presenceIndex = new int[options.players];
+        for (int i = 0; i < options.players; i++) {
+            var id = new UUID(this.random.nextLong(), this.random.nextLong());
+            this.players[i] = new PlayerRef(id);
+            this.names[i] = Text.literal("player" + i);
+            this.byPresence[i] = i;
+            this.presenceIndex[i] = i;
+        }
+
+        this.cumulativeWeights = new int[this.operations.length];
+        int total = 0;
+        for (var operation : this.operations) {
+            total += options.weights.getInt(operation.key);
+            this.cumulativeWeights[operation.ordinal()] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one operation needs a positive weight");
+        }
+
+        int online = (int) (options.players * options.online);
+        for (int i = 0; i < online; i++) {
+            this.login();
+        }
+    }
+
+    public static void main(String[] args) {
+        var options = Options.parse(args);
+
+        // warm up on a manager of its own, as its metrics cannot be reset before measuring
+        var warmup = new PartySimulator(options);
+        try {
+            warmup.run(options.warmup);
+        } finally {
+            warmup.manager.close();
+        }
+
+        var simulator = new PartySimulator(options);
+        try {
+            simulator.report(simulator.measure());
+        } finally {
+            simulator.manager.close();
+        }
+    }
+
+    private void run(int ticks) {
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < this.options.rate; i++) {
+                this.step();
+            }
+            this.manager.tick();
+        }
+    }
+
+    private Result measure() {
+        var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long startAllocated = threads.getCurrentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+
+        this.run(this.options.ticks);
+
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - startAllocated;
+        return new Result(this.manager.getMetrics(), (long) this.options.ticks * this.options.rate, nanos, allocated);
+    }
+
+    private void step() {
+        int roll = this.random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+        var operation = this.operations[0];
+        for (var candidate : this.operations) {
+            if (roll < this.cumulativeWeights[candidate.ordinal()]) {
+                operation = candidate;
+                break;
+            }
+        }
+
+        switch (operation) {
+            case INVITE -> this.manager.invitePlayer(this.onlinePlayer(), this.anyPlayer());
+            case ACCEPT -> {
+                var player = this.onlinePlayer();
+                var invites = this.manager.getInvitingParties(player);
+                this.manager.acceptInvite(player, invites.isEmpty() ? null : invites.iterator().next());
+            }
+            case KICK -> {
+                var owner = this.onlinePlayer();
+                var party = this.manager.getOwnParty(owner);
+                this.manager.kickPlayer(owner, party != null ? this.memberOf(party) : this.anyPlayer());
+            }
+            case LEAVE -> this.manager.leaveParty(this.onlinePlayer());
+            case DISBAND -> this.manager.disband(this.onlinePlayer());
+            case LOGIN -> this.login();
+            case LOGOUT -> this.logout();
+        }
+    }
+
+    private void login() {
+        if (this.onlineCount < this.players.length) {
+            int player = this.byPresence[this.onlineCount + this.random.nextInt(this.players.length - this.onlineCount)];
+            this.moveToPresence(player, this.onlineCount++);
+            this.presence.login(this.players[player]);
+            this.manager.onPlayerJoin(this.players[player], null);
+        }
+    }
+
+    private void logout() {
+        if (this.onlineCount > 0) {
+            int player = this.byPresence[this.random.nextInt(this.onlineCount)];
+            this.moveToPresence(player, --this.onlineCount);
+            this.presence.logout(this.players[player]);
+            this.manager.onPlayerLogOut(this.players[player], this.names[player]);
+        }
+    }
+
+    private void moveToPresence(int player, int index) {
+        int displaced = this.byPresence[index];
+        int from = this.presenceIndex[player];
+        this.byPresence[index] = player;
+        this.presenceIndex[player] = index;
+        this.byPresence[from] = displaced;
+        this.presenceIndex[displaced] = from;
+    }
+
+    private PlayerRef onlinePlayer() {
+        if (this.onlineCount == 0) {
+            return this.anyPlayer();
+        }
+        return this.players[this.byPresence[this.random.nextInt(this.onlineCount)]];
+    }
+
+    private PlayerRef anyPlayer() {
+        return this.players[this.random.nextInt(this.players.length)];
+    }
+
+    private PlayerRef memberOf(Party party) {
+        int index = this.random.nextInt(party.getMembers().size());
+        for (var member : party.getMembers()) {
+            if (index-- == 0) {
+                return member;
+            }
+        }
+        return party.getOwner();
+    }
+
+    private void report(Result result) {
+        double seconds = result.nanos / 1e9;
+        System.out.printf(Locale.ROOT, "%d players (%d online), %d ticks at %d ops/tick, seed %d%n",
+                this.players.length, this.onlineCount, this.options.ticks, this.options.rate, this.options.seed);
+        System.out.printf(Locale.ROOT, "throughput: %,.0f ops/s (%d ops in %.3f s)%n",
+                result.operations / seconds, result.operations, seconds);
+        System.out.printf(Locale.ROOT, "allocation: %,.1f MB/s, %,.1f bytes/op%n",
+                result.allocated / seconds / (1024 * 1024), (double) result.allocated / result.operations);
+        System.out.printf(Locale.ROOT, "parties: %d%n", this.manager.getPartyCount());
+
+        var work = this.manager.getWorkStats();
+        System.out.printf(Locale.ROOT, "deferred work: %d waiting, %d done in %d chunks, %d ticks over budget, longest wait %d ticks, slowest tick %.2f us%n%n",
+                work.backlog(), work.completed(), work.chunks(), work.overBudgetTicks(), work.maxWaitTicks(), work.maxTickNanos() / 1e3);
+
+        System.out.printf(Locale.ROOT, "%-24s %-22s %10s %10s %10s %10s%n", "operation", "outcome", "count", "p50 (us)", "p99 (us)", "max (us)");
+        result.metrics.forEach(stat -> System.out.printf(
+                Locale.ROOT, "%-24s %-22s %10d %10.2f %10.2f %10.2f%n",
+                stat.operation().asString(), stat.outcome(), stat.count(),
+                stat.quantile(0.5) / 1e3, stat.quantile(0.99) / 1e3, stat.maxNanos() / 1e3
+        ));
+    }
+
+    private enum Operation {
+        INVITE("invite"),
+        ACCEPT("accept"),
+        KICK("kick"),
+        LEAVE("leave"),
+        DISBAND("disband"),
+        LOGIN("login"),
+        LOGOUT("logout");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+    }
+
+    private record Result(PartyMetrics metrics, long operations, long nanos, long allocated) {
+    }
+
+    private static final class Options {
+        int players = 10_000;
+        double online = 0.8;
+        int ticks = 1200;
+        int warmup = 200;
+        int rate = 500;
+        long seed;
+        int capacity = PartyConfig.DEFAULT.defaultCapacity();
+        int grace = PartyConfig.DEFAULT.reconnectGraceTicks();
+        int ttl = PartyConfig.DEFAULT.inviteTtlTicks();
+        final Object2IntLinkedOpenHashMap<String> weights = new Object2IntLinkedOpenHashMap<>();
+
+        static Options parse(String[] args) {
+            var options = new Options();
+            options.weights.put("invite", 30);
+            options.weights.put("accept", 25);
+            options.weights.put("kick", 5);
+            options.weights.put("leave", 10);
+            options.weights.put("disband", 5);
+            options.weights.put("login", 12);
+            options.weights.put("logout", 13);
+
+            for (var arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator == -1) {
+                    throw new IllegalArgumentException("Expected key=value but got " + arg);
+                }
+
+                var key = arg.substring(0, separator);
+                var value = arg.substring(separator + 1);
+                switch (key) {
+                    case "players" -> options.players = Integer.parseInt(value);
+                    case "online" -> options.online = Double.parseDouble(value);
+                    case "ticks" -> options.ticks = Integer.parseInt(value);
+                    case "warmup" -> options.warmup = Integer.parseInt(value);
+                    case "rate" -> options.rate = Integer.parseInt(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    case "capacity" -> options.capacity = Integer.parseInt(value);
+                    case "grace" -> options.grace = Integer.parseInt(value);
+                    case "ttl" -> options.ttl = Integer.parseInt(value);
+                    default -> {
+                        if (!options.weights.containsKey(key)) {
+                            throw new IllegalArgumentException("Unknown option " + key);
+                        }
+                        options.weights.put(key, Integer.parseInt(value));
+                    }
+                }
+            }
+            return options;
+        }
+    }
+}
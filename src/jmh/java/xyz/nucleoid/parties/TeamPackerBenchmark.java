@@ -0,0 +1,58 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TeamPackerBenchmark {
+    private static final int MAX_PARTY_SIZE = 6;
+    // the default per-lobby budget, so the results show the worst case of a tick spent packing
+    private static final int MAX_STEPS = PartyConfig.TeamBalancing.DEFAULT.maxSteps();
+
+    @Param({"500"})
+    public int players;
+
+    @Param({"2", "4", "8"})
+    public int teams;
+
+    /**
+     * The fraction of lobby players that belong to a party.
+     */
+    @Param({"0.5", "1.0"})
+    public double partyDensity;
+
+    private List<List<UUID>> groups;
+
+    @Setup
+    public void setup() {
+        var random = new Random(0);
+        this.groups = new ObjectArrayList<>();
+
+        int partied = (int) (this.players * this.partyDensity);
+        int remaining = this.players;
+        while (remaining > 0) {
+            int size = this.players - remaining < partied ? Math.min(1 + random.nextInt(MAX_PARTY_SIZE), remaining) : 1;
+            var group = new ObjectArrayList<UUID>(size);
+            for (int i = 0; i < size; i++) {
+                group.add(new UUID(random.nextLong(), random.nextLong()));
+            }
+            this.groups.add(group);
+            remaining -= size;
+        }
+    }
+
+    @Benchmark
+    public List<List<UUID>> pack() {
+        return PartyTeamPacker.pack(this.groups, this.teams, 0L, MAX_STEPS);
+    }
+}
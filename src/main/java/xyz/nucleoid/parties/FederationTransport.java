@@ -0,0 +1,34 @@
+package xyz.nucleoid.parties;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Carries encoded {@link PartyDelta} messages between the servers of a federation. Transports only need to deliver
+ * whole messages to every other node; ordering and conflicts are resolved by {@link PartyFederation}.
+ */
+public interface FederationTransport extends AutoCloseable {
+    /**
+     * @param receiver called with every message from another node, possibly on a thread of the transport
+     */
+    void start(Consumer<ByteBuffer> receiver);
+
+    /**
+     * Sends a message to every other node. The transport must not modify the buffer, and may not hold on to it after
+     * returning without copying it.
+     */
+    void broadcast(ByteBuffer message);
+
+    /**
+     * Sends a message to every other node, like {@link #broadcast(ByteBuffer)}. A transport that has to hold messages
+     * back may replace a message that it has not sent yet with a later one of the same key, as the later one carries
+     * the whole state the earlier one did.
+     */
+    default void broadcast(ByteBuffer message, UUID key) {
+        this.broadcast(message);
+    }
+
+    @Override
+    void close();
+}
@@ -2,14 +2,27 @@ package xyz.nucleoid.parties;
 
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class GameParties implements ModInitializer {
+    public static final String ID = "game_parties";
+    public static final Logger LOGGER = LoggerFactory.getLogger(ID);
+
+    private static PartyConfig config = PartyConfig.DEFAULT;
+
     @Override
     public void onInitialize() {
+        config = PartyConfig.load();
+
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             PartyCommand.register(dispatcher);
         });
 
         PartyManager.register();
     }
+
+    public static PartyConfig getConfig() {
+        return config;
+    }
 }
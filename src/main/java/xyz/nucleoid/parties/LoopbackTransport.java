@@ -0,0 +1,44 @@
+package xyz.nucleoid.parties;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages in memory to the other transports attached to the same {@link Hub}, for running several nodes of
+ * a federation in one process.
+ */
+public final class LoopbackTransport implements FederationTransport {
+    private final Hub hub;
+    private volatile Consumer<ByteBuffer> receiver;
+
+    public LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(Consumer<ByteBuffer> receiver) {
+        this.receiver = receiver;
+        this.hub.transports.add(this);
+    }
+
+    @Override
+    public void broadcast(ByteBuffer message) {
+        for (var transport : this.hub.transports) {
+            if (transport != this) {
+                var copy = ByteBuffer.allocate(message.remaining()).put(message.duplicate()).flip();
+                transport.receiver.accept(copy);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.hub.transports.remove(this);
+    }
+
+    public static final class Hub {
+        private final List<LoopbackTransport> transports = new CopyOnWriteArrayList<>();
+    }
+}
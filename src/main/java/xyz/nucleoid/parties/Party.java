@@ -2,31 +2,53 @@ package xyz.nucleoid.parties;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
-import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.plasmid.api.game.player.MutablePlayerSet;
 import xyz.nucleoid.plasmid.api.util.PlayerRef;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 public final class Party {
-    public static final int PARTY_CAPACITY = 4;
+    private static final int INITIAL_MEMBERS = 4;
 
     private final UUID uuid;
     private PlayerRef owner;
+    private int capacity;
 
-    private final List<PlayerRef> members = new ObjectArrayList<>();
-    private final Set<PlayerRef> pendingMembers = new ObjectOpenHashSet<>();
-    private final MutablePlayerSet memberPlayers;
+    // member UUIDs in join order, as most and least significant bits in alternating slots; parties are small, so a
+    // linear scan over this one array is cheaper in both memory and time than a hash set of member references
+    private long[] memberBits = new long[2 * INITIAL_MEMBERS];
+    // the references the members were added with, in the same order, so that iterating the members allocates nothing
+    private PlayerRef[] memberRefs = new PlayerRef[INITIAL_MEMBERS];
+    private int memberCount;
+    private final List<PlayerRef> members = new Members();
 
+    private final Set<PlayerRef> pendingMembers = new ObjectOpenHashSet<>(1);
+    @Nullable
+    private MutablePlayerSet memberPlayers;
 
-    Party(MinecraftServer server, PlayerRef owner) {
-        this.memberPlayers = new MutablePlayerSet(server);
+    private final PartyPresence presence;
+    private final ObjectArrayList<ServerPlayerEntity> onlineMembers = new ObjectArrayList<>();
+    private boolean onlineMembersDirty = true;
+
+    Party(PartyPresence presence, PlayerRef owner, int capacity) {
+        this(presence, UUID.randomUUID(), owner, capacity);
+    }
+
+    Party(PartyPresence presence, UUID uuid, PlayerRef owner, int capacity) {
+        this.presence = presence;
+        this.capacity = capacity;
         this.add(owner);
         this.setOwner(owner);
 
-        this.uuid = UUID.randomUUID();
+        this.uuid = uuid;
     }
 
     PlayerRef getOwner() {
@@ -42,11 +64,19 @@ public final class Party {
     }
 
     boolean isFull() {
-        return this.members.size() >= PARTY_CAPACITY;
+        return this.memberCount >= this.capacity;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
     }
 
     boolean invite(PlayerRef player) {
-        if (this.memberPlayers.contains(player)) {
+        if (this.contains(player)) {
             return false;
         }
         return this.pendingMembers.add(player);
@@ -60,41 +90,168 @@ public final class Party {
         return false;
     }
 
+    boolean cancelInvite(PlayerRef player) {
+        return this.pendingMembers.remove(player);
+    }
+
     void add(PlayerRef player) {
-        this.memberPlayers.add(player);
-        this.members.add(player);
+        if (this.indexOf(player.id()) == -1) {
+            int slot = 2 * this.memberCount;
+            if (slot == this.memberBits.length) {
+                this.memberBits = Arrays.copyOf(this.memberBits, 2 * slot);
+                this.memberRefs = Arrays.copyOf(this.memberRefs, slot);
+            }
+            this.memberBits[slot] = player.id().getMostSignificantBits();
+            this.memberBits[slot + 1] = player.id().getLeastSignificantBits();
+            this.memberRefs[this.memberCount++] = player;
+
+            if (this.memberPlayers != null) {
+                this.memberPlayers.add(player);
+            }
+        }
         this.pendingMembers.remove(player);
+        this.onlineMembersDirty = true;
     }
 
     boolean remove(PlayerRef player) {
-        if (this.memberPlayers.remove(player)) {
-            this.members.remove(player);
+        int index = this.indexOf(player.id());
+        if (index != -1) {
+            int slot = 2 * index;
+            System.arraycopy(this.memberBits, slot + 2, this.memberBits, slot, 2 * this.memberCount - slot - 2);
+            System.arraycopy(this.memberRefs, index + 1, this.memberRefs, index, this.memberCount - index - 1);
+            this.memberRefs[--this.memberCount] = null;
+
+            if (this.memberPlayers != null) {
+                this.memberPlayers.remove(player);
+            }
+            this.onlineMembersDirty = true;
             return true; // succeed to remove from members
         }
         return this.pendingMembers.remove(player); // if succeed to remove from pending
     }
 
     public boolean contains(PlayerRef player) {
-        return this.memberPlayers.contains(player);
+        return this.indexOf(player.id()) != -1;
+    }
+
+    private int indexOf(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        var bits = this.memberBits;
+        for (int i = 0; i < this.memberCount; i++) {
+            if (bits[2 * i] == most && bits[2 * i + 1] == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private PlayerRef memberAt(int index) {
+        return this.memberRefs[index];
     }
 
     public boolean isInvited(PlayerRef player) {
         return this.pendingMembers.contains(player);
     }
 
+    Set<PlayerRef> getPendingMembers() {
+        return this.pendingMembers;
+    }
+
     public boolean isOwner(PlayerRef from) {
         return from.equals(this.owner);
     }
 
+    boolean isOwner(UUID id) {
+        return this.owner.id().equals(id);
+    }
+
+    /**
+     * @return a read-only view of the members of this party, in the order they joined
+     */
     public List<PlayerRef> getMembers() {
         return this.members;
     }
 
+    /**
+     * @return the members of this party as a player set, created on first use and kept up to date from then on
+     * @throws IllegalStateException if this party is not on a server
+     */
     public MutablePlayerSet getMemberPlayers() {
-        return this.memberPlayers;
+        var memberPlayers = this.memberPlayers;
+        if (memberPlayers == null) {
+            var server = this.presence.getServer();
+            if (server == null) {
+                throw new IllegalStateException("Member players are only available on a server");
+            }
+            memberPlayers = new MutablePlayerSet(server);
+            for (int i = 0; i < this.memberCount; i++) {
+                memberPlayers.add(this.memberAt(i));
+            }
+            this.memberPlayers = memberPlayers;
+        }
+        return memberPlayers;
+    }
+
+    void invalidateOnlineMembers() {
+        this.onlineMembersDirty = true;
+    }
+
+    /**
+     * @return the currently online members, resolved once and reused until a member joins, leaves or respawns
+     */
+    List<ServerPlayerEntity> getOnlineMembers() {
+        if (this.onlineMembersDirty) {
+            this.onlineMembers.clear();
+            for (int i = 0; i < this.memberCount; i++) {
+                var player = this.presence.getPlayer(this.memberRefs[i].id());
+                if (player != null) {
+                    this.onlineMembers.add(player);
+                }
+            }
+            this.onlineMembersDirty = false;
+        }
+        return this.onlineMembers;
+    }
+
+    <T> void forEachOnlineMember(T context, BiConsumer<T, ServerPlayerEntity> consumer) {
+        var onlineMembers = this.getOnlineMembers();
+        for (int i = 0; i < onlineMembers.size(); i++) {
+            consumer.accept(context, onlineMembers.get(i));
+        }
     }
 
     public UUID getUuid() {
         return this.uuid;
     }
+
+    private final class Members extends AbstractList<PlayerRef> implements RandomAccess {
+        @Override
+        public PlayerRef get(int index) {
+            if (index < 0 || index >= Party.this.memberCount) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return Party.this.memberAt(index);
+        }
+
+        @Override
+        public int size() {
+            return Party.this.memberCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof PlayerRef player && Party.this.contains(player);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof PlayerRef player ? Party.this.indexOf(player.id()) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return this.indexOf(o);
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package xyz.nucleoid.parties;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk operation on the {@link PartyManager}. A batch is either applied entirely or, if any part of it
+ * is invalid, not at all.
+ */
+public final class PartyBatchResult {
+    private final List<Party> parties;
+    private final PartyError error;
+    private final PlayerRef culprit;
+
+    private PartyBatchResult(List<Party> parties, PartyError error, PlayerRef culprit) {
+        this.parties = parties;
+        this.error = error;
+        this.culprit = culprit;
+    }
+
+    public static PartyBatchResult ok(List<Party> parties) {
+        return new PartyBatchResult(parties, null, null);
+    }
+
+    public static PartyBatchResult err(PartyError error, @Nullable PlayerRef culprit) {
+        return new PartyBatchResult(List.of(), error, culprit);
+    }
+
+    public static PartyBatchResult err(PartyError error, @Nullable PlayerRef culprit, Party party) {
+        return new PartyBatchResult(List.of(party), error, culprit);
+    }
+
+    public boolean isOk() {
+        return this.error == null;
+    }
+
+    public boolean isErr() {
+        return this.error != null;
+    }
+
+    /**
+     * @return the affected parties, or for errors, the party the error relates to if there is one
+     */
+    public List<Party> parties() {
+        return this.parties;
+    }
+
+    @Nullable
+    public PartyError error() {
+        return this.error;
+    }
+
+    /**
+     * @return the player that caused the batch to be rejected, if the error relates to a single player
+     */
+    @Nullable
+    public PlayerRef culprit() {
+        return this.culprit;
+    }
+}
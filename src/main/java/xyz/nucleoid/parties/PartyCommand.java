@@ -2,22 +2,34 @@ package xyz.nucleoid.parties;
 
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import net.minecraft.command.CommandSource;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.command.argument.GameProfileArgumentType;
+import net.minecraft.command.argument.IdentifierArgumentType;
 import net.minecraft.command.argument.UuidArgumentType;
+import net.minecraft.registry.Registry;
 import net.minecraft.screen.ScreenTexts;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
-import xyz.nucleoid.plasmid.api.game.player.PlayerSet;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.game.config.GameConfig;
+import xyz.nucleoid.plasmid.api.game.config.GameConfigs;
 import xyz.nucleoid.plasmid.api.util.PlayerRef;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
@@ -27,9 +39,25 @@ public final class PartyCommand {
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(
             literal("party")
-                .then(literal("list_all")
+                .then(paged(literal("list_all"), ctx -> party -> true)
                     .requires(source -> source.hasPermissionLevel(2))
-                    .executes(PartyCommand::listParties)
+                    .then(literal("member")
+                        .then(paged(argument("member", GameProfileArgumentType.gameProfile()), PartyCommand::memberFilter))
+                    )
+                    .then(literal("owner")
+                        .then(paged(argument("owner", GameProfileArgumentType.gameProfile()), PartyCommand::ownerFilter))
+                    )
+                    .then(literal("size")
+                        .then(paged(argument("min", IntegerArgumentType.integer(1)), ctx -> sizeFilter(ctx, Integer.MAX_VALUE))
+                            .then(paged(argument("max", IntegerArgumentType.integer(1)), ctx -> sizeFilter(ctx, IntegerArgumentType.getInteger(ctx, "max"))))
+                        )
+                    )
+                    .then(paged(literal("pending"), ctx -> party -> !party.getPendingMembers().isEmpty()))
+                )
+                .then(literal("stats")
+                    .requires(source -> source.hasPermissionLevel(2))
+                    .executes(PartyCommand::showStats)
+                    .then(literal("dump").executes(PartyCommand::dumpStats))
                 )
                 .then(literal("list").executes(PartyCommand::listPlayerParty))
                 .then(literal("invite")
@@ -53,6 +81,13 @@ public final class PartyCommand {
                     )
                 )
                 .then(literal("leave").executes(PartyCommand::leave))
+                .then(literal("queue")
+                    .then(literal("cancel").executes(PartyCommand::unqueue))
+                    .then(argument("game", IdentifierArgumentType.identifier())
+                        .suggests((ctx, builder) -> CommandSource.suggestIdentifiers(gameConfigs(ctx.getSource().getServer()).getIds(), builder))
+                        .executes(PartyCommand::queue)
+                    )
+                )
                 .then(literal("disband").executes(PartyCommand::disband))
                 .then(literal("add")
                     .requires(source -> source.hasPermissionLevel(2))
@@ -65,46 +100,186 @@ public final class PartyCommand {
                         )
                     )
                 )
+                .then(literal("capacity")
+                    .requires(source -> source.hasPermissionLevel(2))
+                    .then(argument("party", UuidArgumentType.uuid())
+                        .then(argument("capacity", IntegerArgumentType.integer(1))
+                            .executes(PartyCommand::setCapacity)
+                        )
+                    )
+                )
                 .then(literal("remove")
                     .requires(source -> source.hasPermissionLevel(2))
                     .then(argument("player", EntityArgumentType.player())
                     .executes(PartyCommand::removePlayer)
                 ))
+                .then(literal("bulk")
+                    .requires(source -> source.hasPermissionLevel(2))
+                    .then(literal("create")
+                        .then(argument("players", EntityArgumentType.players())
+                            .then(argument("size", IntegerArgumentType.integer(1))
+                                .executes(PartyCommand::bulkCreate)
+                            )
+                        )
+                    )
+                    .then(literal("move")
+                        .then(argument("players", EntityArgumentType.players())
+                            .then(argument("party", UuidArgumentType.uuid())
+                                .executes(PartyCommand::bulkMove)
+                            )
+                        )
+                    )
+                    .then(literal("disband")
+                        .then(argument("players", EntityArgumentType.players())
+                            .executes(PartyCommand::bulkDisband)
+                        )
+                    )
+                )
         );
     }
     // @formatter:on
 
-    private static int listParties(CommandContext<ServerCommandSource> ctx) {
+    /**
+     * Lets the given list node run on its own, or followed by {@code page <page>} or {@code after <party>} to continue
+     * the listing.
+     */
+    private static <T extends ArgumentBuilder<ServerCommandSource, T>> T paged(T node, PartyFilter filter) {
+        return node
+            .executes(ctx -> listParties(ctx, filter.create(ctx), null, 1))
+            .then(literal("page")
+                .then(argument("page", IntegerArgumentType.integer(1))
+                    .executes(ctx -> listParties(ctx, filter.create(ctx), null, IntegerArgumentType.getInteger(ctx, "page")))
+                )
+            )
+            .then(literal("after")
+                .then(argument("after", UuidArgumentType.uuid())
+                    .executes(ctx -> listParties(ctx, filter.create(ctx), UuidArgumentType.getUuid(ctx, "after"), 1))
+                )
+            );
+    }
+
+    /**
+     * Sends a page of the parties that pass the filter. The page is only known once the scan completes, which may be a
+     * few ticks later. So the command returns how many parties there are in total, which is 0 when there are none to
+     * list.
+     */
+    private static int listParties(CommandContext<ServerCommandSource> ctx, Predicate<Party> filter, @Nullable UUID after, int page) {
         var source = ctx.getSource();
         var server = source.getServer();
 
         var partyManager = PartyManager.get(server);
-        var parties = new ArrayList<>(partyManager.getAllParties());
+        int pageSize = GameParties.getConfig().listPageSize();
+        var command = listCommand(ctx);
+
+        // the listing may take a few ticks to scan every party, so the page is only sent once it is complete
+        partyManager.scanParties(after, (page - 1) * pageSize, pageSize, filter, result -> {
+            var parties = result.parties();
+            if (parties.isEmpty()) {
+                source.sendError(PartyTexts.noParties());
+                return;
+            }
 
-        if (parties.isEmpty()) {
-            source.sendError(PartyTexts.noParties());
-            return 0;
+            var next = result.next();
+            var nextCommand = next != null ? command + " after " + next : null;
+
+            source.sendFeedback(() -> {
+                var text = Text.empty();
+                for (var party : parties) {
+                    text.append(getPartyList(server, party));
+                    text.append(ScreenTexts.LINE_BREAK);
+                }
+                text.append(PartyTexts.listFooter(parties.size(), nextCommand));
+
+                return text;
+            }, false);
+        });
+
+        return partyManager.getPartyCount();
+    }
+
+    /**
+     * @return the command that was run, without any paging arguments
+     */
+    private static String listCommand(CommandContext<ServerCommandSource> ctx) {
+        var input = ctx.getInput();
+        int end = input.length();
+        for (var node : ctx.getNodes()) {
+            var name = node.getNode().getName();
+            if (node.getNode() instanceof LiteralCommandNode && (name.equals("page") || name.equals("after"))) {
+                end = node.getRange().getStart();
+                break;
+            }
         }
 
-        parties.sort(Comparator.comparing(Party::getUuid));
+        var command = input.substring(0, end).trim();
+        return command.startsWith("/") ? command : "/" + command;
+    }
 
-        source.sendFeedback(() -> {
-            boolean first = true;
-            var text = Text.empty();
-            for (var party : parties) {
-                if (first) {
-                    first = false;
-                } else {
-                    text.append(ScreenTexts.LINE_BREAK);
+    private static Predicate<Party> memberFilter(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        var members = profileRefs(ctx, "member");
+        return party -> {
+            for (var member : members) {
+                if (party.contains(member)) {
+                    return true;
                 }
-                text.append(getPartyList(server, party));
             }
-            text.append(ScreenTexts.LINE_BREAK);
+            return false;
+        };
+    }
+
+    private static Predicate<Party> ownerFilter(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        var owners = profileRefs(ctx, "owner");
+        return party -> owners.contains(party.getOwner());
+    }
+
+    private static Predicate<Party> sizeFilter(CommandContext<ServerCommandSource> ctx, int max) {
+        int min = IntegerArgumentType.getInteger(ctx, "min");
+        return party -> {
+            int size = party.getMembers().size();
+            return size >= min && size <= max;
+        };
+    }
+
+    private static List<PlayerRef> profileRefs(CommandContext<ServerCommandSource> ctx, String name) throws CommandSyntaxException {
+        var profiles = GameProfileArgumentType.getProfileArgument(ctx, name);
+        var refs = new ArrayList<PlayerRef>(profiles.size());
+        for (var profile : profiles) {
+            refs.add(PlayerRef.of(profile));
+        }
+        return refs;
+    }
+
+    @FunctionalInterface
+    private interface PartyFilter {
+        Predicate<Party> create(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException;
+    }
 
+    private static int showStats(CommandContext<ServerCommandSource> ctx) {
+        var source = ctx.getSource();
+        var partyManager = PartyManager.get(source.getServer());
+
+        source.sendFeedback(() -> {
+            var text = PartyTexts.statsHeader(partyManager.getPartyCount());
+            partyManager.getMetrics().forEach(stat -> {
+                text.append(ScreenTexts.LINE_BREAK);
+                text.append(PartyTexts.statsEntry(stat));
+            });
+            text.append(ScreenTexts.LINE_BREAK);
+            text.append(PartyTexts.statsDeferred(partyManager.getWorkStats()));
             return text;
         }, false);
 
-        return parties.size();
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int dumpStats(CommandContext<ServerCommandSource> ctx) {
+        var source = ctx.getSource();
+        var partyManager = PartyManager.get(source.getServer());
+
+        var path = partyManager.dumpMetrics();
+        source.sendFeedback(() -> PartyTexts.statsDumped(path.toString()), false);
+
+        return Command.SINGLE_SUCCESS;
     }
 
     private static int listPlayerParty(CommandContext<ServerCommandSource> ctx) {
@@ -135,11 +310,13 @@ public final class PartyCommand {
             text.append(ScreenTexts.LINE_BREAK);
 
             if (party.isOwner(member)) {
-                text.append(PartyTexts.listMemberEntryType(member, server, PartyTexts.listMemberTypeOwner().formatted(Formatting.LIGHT_PURPLE)));
+                text.append(PartyTexts.listMemberEntryType(member, server, PartyTexts.listMemberTypeOwner()));
+            } else if (PartyManager.get(server).isAwaitingReconnect(member)) {
+                text.append(PartyTexts.listMemberEntryType(member, server, PartyTexts.listMemberTypeOffline()));
             } else if (party.contains(member)) {
                 text.append(PartyTexts.listMemberEntry(member, server));
             } else {
-                text.append(PartyTexts.listMemberEntryType(member, server, PartyTexts.listMemberTypePending().formatted(Formatting.GRAY)));
+                text.append(PartyTexts.listMemberEntryType(member, server, PartyTexts.listMemberTypePending()));
             }
         }
 
@@ -153,14 +330,17 @@ public final class PartyCommand {
         var player = EntityArgumentType.getPlayer(ctx, "player");
 
         var partyManager = PartyManager.get(source.getServer());
+        if (partyManager.isRateLimited(PartyRateLimiter.Action.INVITE, PlayerRef.of(owner), PlayerRef.of(player))) {
+            source.sendError(PartyTexts.displayError(PartyError.RATE_LIMITED, player));
+            return 0;
+        }
+
         var result = partyManager.invitePlayer(PlayerRef.of(owner), PlayerRef.of(player));
         if (result.isOk()) {
             source.sendFeedback(() -> PartyTexts.invitedSender(player).formatted(Formatting.GREEN), false);
-            var notification = PartyTexts.invitedReceiver(owner, result.party().getUuid()).formatted(Formatting.GOLD);
-            player.sendMessage(notification.formatted(Formatting.GREEN));
+            player.sendMessage(partyManager.getInviteText(result.party(), owner));
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, player));
+            source.sendError(PartyTexts.displayError(result, player));
             return 0;
         }
 
@@ -176,18 +356,18 @@ public final class PartyCommand {
 
         for (var profile : profiles) {
             var partyManager = PartyManager.get(source.getServer());
+            if (partyManager.isRateLimited(PartyRateLimiter.Action.KICK, PlayerRef.of(owner), PlayerRef.of(profile))) {
+                source.sendError(PartyTexts.displayError(PartyError.RATE_LIMITED, profile.getName()));
+                return 0;
+            }
+
             var result = partyManager.kickPlayer(PlayerRef.of(owner), PlayerRef.of(profile));
             if (result.isOk()) {
-                Party party = result.party();
-                PlayerSet memberPlayers = party.getMemberPlayers();
-                PlayerRef.of(profile).ifOnline(server, player -> {
-                    var message = PartyTexts.kickedSender(player);
-                    memberPlayers.sendMessage(message);
-                    player.sendMessage(PartyTexts.kickedReceiver().formatted(Formatting.RED), false);
-                });
+                var ref = PlayerRef.of(profile);
+                partyManager.notifyParty(result.party(), PartyNotifier.Kind.KICKED, PartyTexts.name(ref, server));
+                ref.ifOnline(server, player -> player.sendMessage(PartyTexts.kickedReceiver(), false));
             } else {
-                var error = result.error();
-                source.sendError(PartyTexts.displayError(error, profile.getName()));
+                source.sendError(PartyTexts.displayError(result, profile.getName()));
                 return 0;
             }
         }
@@ -215,8 +395,7 @@ public final class PartyCommand {
                     false
             );
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, newOwner));
+            source.sendError(PartyTexts.displayError(result, newOwner));
             return 0;
         }
 
@@ -242,12 +421,17 @@ public final class PartyCommand {
         var player = source.getPlayer();
 
         var partyManager = PartyManager.get(source.getServer());
+        // only the player accepting is throttled, since the owner has no say in how often invites are accepted
+        if (partyManager.isRateLimited(PartyRateLimiter.Action.ACCEPT, PlayerRef.of(player), null)) {
+            source.sendError(PartyTexts.displayError(PartyError.RATE_LIMITED, player));
+            return 0;
+        }
+
         var result = partyManager.acceptInvite(PlayerRef.of(player), party);
         if (result.isOk()) {
-            party.getMemberPlayers().sendMessage(PartyTexts.joinSuccess(player));
+            partyManager.notifyParty(party, PartyNotifier.Kind.JOINED, player.getDisplayName());
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, player));
+            source.sendError(PartyTexts.displayError(result, player));
             return 0;
         }
 
@@ -261,13 +445,58 @@ public final class PartyCommand {
         var partyManager = PartyManager.get(source.getServer());
         var result = partyManager.leaveParty(PlayerRef.of(player));
         if (result.isOk()) {
-            var party = result.party();
-            var message = PartyTexts.leaveSuccess(player);
-            party.getMemberPlayers().sendMessage(message);
-            player.sendMessage(message);
+            partyManager.notifyParty(result.party(), PartyNotifier.Kind.LEFT, player.getDisplayName());
+            player.sendMessage(PartyTexts.leaveSuccess(player));
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, player));
+            source.sendError(PartyTexts.displayError(result, player));
+            return 0;
+        }
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int queue(CommandContext<ServerCommandSource> ctx) {
+        var source = ctx.getSource();
+        var owner = source.getPlayer();
+        var gameId = IdentifierArgumentType.getIdentifier(ctx, "game");
+
+        // a party queued for a game that does not exist would wait forever
+        if (!gameConfigs(source.getServer()).containsId(gameId)) {
+            source.sendError(PartyTexts.unknownGame(gameId));
+            return 0;
+        }
+
+        var partyManager = PartyManager.get(source.getServer());
+        var result = partyManager.queueParty(PlayerRef.of(owner), gameId);
+        if (result.isOk()) {
+            var message = PartyTexts.queueJoined(gameId).formatted(Formatting.GREEN);
+            result.party().forEachOnlineMember(message, (text, player) -> player.sendMessage(text));
+        } else {
+            source.sendError(PartyTexts.displayError(result, owner));
+            return 0;
+        }
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static Registry<GameConfig<?>> gameConfigs(MinecraftServer server) {
+        return server.getRegistryManager().getOrThrow(GameConfigs.REGISTRY_KEY);
+    }
+
+    private static int unqueue(CommandContext<ServerCommandSource> ctx) {
+        var source = ctx.getSource();
+        var owner = source.getPlayer();
+
+        var partyManager = PartyManager.get(source.getServer());
+        var party = partyManager.getOwnParty(PlayerRef.of(owner));
+        var gameId = party != null ? partyManager.getQueuedGame(party) : null;
+
+        var result = partyManager.unqueueParty(PlayerRef.of(owner));
+        if (result.isOk()) {
+            var message = PartyTexts.queueLeft(gameId).formatted(Formatting.GRAY);
+            result.party().forEachOnlineMember(message, (text, player) -> player.sendMessage(text));
+        } else {
+            source.sendError(PartyTexts.displayError(result, owner));
             return 0;
         }
 
@@ -281,11 +510,9 @@ public final class PartyCommand {
         var partyManager = PartyManager.get(source.getServer());
         var result = partyManager.disband(PlayerRef.of(owner));
         if (result.isOk()) {
-            var party = result.party();
-            party.getMemberPlayers().sendMessage(PartyTexts.disbandSuccess());
+            partyManager.notifyParty(result.party(), PartyNotifier.Kind.DISBANDED, null);
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, owner));
+            source.sendError(PartyTexts.displayError(result, owner));
             return 0;
         }
 
@@ -316,10 +543,26 @@ public final class PartyCommand {
         var partyManager = PartyManager.get(source.getServer());
         var result = partyManager.addPlayer(PlayerRef.of(player), party);
         if (result.isOk()) {
-            party.getMemberPlayers().sendMessage(PartyTexts.addSuccess(player));
+            partyManager.notifyParty(party, PartyNotifier.Kind.ADDED, player.getDisplayName());
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, player));
+            source.sendError(PartyTexts.displayError(result, player));
+            return 0;
+        }
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int setCapacity(CommandContext<ServerCommandSource> ctx) {
+        var source = ctx.getSource();
+        var uuid = UuidArgumentType.getUuid(ctx, "party");
+        int capacity = IntegerArgumentType.getInteger(ctx, "capacity");
+
+        var partyManager = PartyManager.get(source.getServer());
+        var result = partyManager.setCapacity(partyManager.getParty(uuid), capacity);
+        if (result.isOk()) {
+            source.sendFeedback(() -> PartyTexts.capacitySet(capacity), false);
+        } else {
+            source.sendError(PartyTexts.displayError(result, uuid.toString()));
             return 0;
         }
 
@@ -333,15 +576,103 @@ public final class PartyCommand {
         var partyManager = PartyManager.get(source.getServer());
         var result = partyManager.removePlayer(PlayerRef.of(player));
         if (result.isOk()) {
-            var message = PartyTexts.removeSuccess(player);
-            result.party().getMemberPlayers().sendMessage(message);
-            player.sendMessage(message);
+            partyManager.notifyParty(result.party(), PartyNotifier.Kind.REMOVED, player.getDisplayName());
+            player.sendMessage(PartyTexts.removeSuccess(player));
         } else {
-            var error = result.error();
-            source.sendError(PartyTexts.displayError(error, player));
+            source.sendError(PartyTexts.displayError(result, player));
             return 0;
         }
 
         return Command.SINGLE_SUCCESS;
     }
+
+    private static int bulkCreate(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        var source = ctx.getSource();
+        var players = EntityArgumentType.getPlayers(ctx, "players");
+        int size = IntegerArgumentType.getInteger(ctx, "size");
+
+        var roster = new ArrayList<List<PlayerRef>>();
+        List<PlayerRef> group = null;
+        for (var player : players) {
+            if (group == null || group.size() >= size) {
+                group = new ArrayList<>(size);
+                roster.add(group);
+            }
+            group.add(PlayerRef.of(player));
+        }
+
+        var partyManager = PartyManager.get(source.getServer());
+        var result = partyManager.createParties(roster);
+        if (result.isOk()) {
+            for (var party : result.parties()) {
+                for (var member : party.getMembers()) {
+                    if (!party.isOwner(member)) {
+                        partyManager.notifyParty(party, PartyNotifier.Kind.JOINED, PartyTexts.name(member, source.getServer()));
+                    }
+                }
+            }
+            source.sendFeedback(() -> PartyTexts.bulkCreated(result.parties().size()), true);
+        } else {
+            source.sendError(PartyTexts.displayError(result, source.getServer()));
+            return 0;
+        }
+
+        return result.parties().size();
+    }
+
+    private static int bulkMove(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        var source = ctx.getSource();
+        var players = EntityArgumentType.getPlayers(ctx, "players");
+        var uuid = UuidArgumentType.getUuid(ctx, "party");
+
+        var partyManager = PartyManager.get(source.getServer());
+        var party = partyManager.getParty(uuid);
+
+        var refs = new ArrayList<PlayerRef>(players.size());
+        var moved = new ArrayList<ServerPlayerEntity>(players.size());
+        for (var player : players) {
+            var ref = PlayerRef.of(player);
+            refs.add(ref);
+            if (party == null || !party.contains(ref)) {
+                moved.add(player);
+            }
+        }
+
+        var result = partyManager.movePlayers(refs, party);
+        if (result.isOk()) {
+            for (var player : moved) {
+                partyManager.notifyParty(party, PartyNotifier.Kind.ADDED, player.getDisplayName());
+            }
+            source.sendFeedback(() -> PartyTexts.bulkMoved(moved.size()), true);
+        } else {
+            source.sendError(PartyTexts.displayError(result, source.getServer()));
+            return 0;
+        }
+
+        return moved.size();
+    }
+
+    private static int bulkDisband(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        var source = ctx.getSource();
+        var players = EntityArgumentType.getPlayers(ctx, "players");
+
+        var refs = new ArrayList<PlayerRef>(players.size());
+        for (var player : players) {
+            refs.add(PlayerRef.of(player));
+        }
+
+        var partyManager = PartyManager.get(source.getServer());
+        var result = partyManager.disbandParties(refs);
+        if (result.isOk()) {
+            for (var party : result.parties()) {
+                partyManager.notifyParty(party, PartyNotifier.Kind.DISBANDED, null);
+            }
+            source.sendFeedback(() -> PartyTexts.bulkDisbanded(result.parties().size()), true);
+        } else {
+            source.sendError(PartyTexts.displayError(result, source.getServer()));
+            return 0;
+        }
+
+        return result.parties().size();
+    }
 }
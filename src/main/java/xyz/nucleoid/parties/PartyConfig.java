@@ -0,0 +1,267 @@
+package xyz.nucleoid.parties;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @param reconnectGraceTicks how long a disconnected member keeps their place in the party, or 0 to remove them
+ *                            immediately
+ * @param inviteTtlTicks how long an invite stays valid, or 0 for invites that never expire
+ * @param defaultCapacity how many members a new party may hold
+ * @param gamePartyLimits per game config, the most party members that are brought into the game together
+ * @param listPageSize how many parties {@code /party list_all} shows at a time
+ * @param queue how queued parties are admitted into game spaces
+ * @param teamBalancing how parties are spread over teams when a lobby is finalized
+ * @param federation how parties are shared with the other servers of a network
+ * @param journal how party traffic is recorded for replaying it offline
+ * @param rateLimit how often players may invite, accept and kick through commands
+ * @param sweep how parties that were left behind are cleaned up
+ * @param scheduler how much time per tick may go to work that is too large to finish at once
+ */
+public record PartyConfig(
+        int reconnectGraceTicks,
+        int inviteTtlTicks,
+        int defaultCapacity,
+        Map<Identifier, Integer> gamePartyLimits,
+        int listPageSize,
+        EventLog eventLog,
+        Persistence persistence,
+        Queue queue,
+        TeamBalancing teamBalancing,
+        Federation federation,
+        Journal journal,
+        RateLimit rateLimit,
+        Sweep sweep,
+        Scheduler scheduler
+) {
+    public static final PartyConfig DEFAULT = new PartyConfig(
+            0,
+            0,
+            4,
+            Map.of(),
+            10,
+            EventLog.DEFAULT,
+            Persistence.DEFAULT,
+            Queue.DEFAULT,
+            TeamBalancing.DEFAULT,
+            Federation.DEFAULT,
+            Journal.DEFAULT,
+            RateLimit.DEFAULT,
+            Sweep.DEFAULT,
+            Scheduler.DEFAULT
+    );
+
+    public static final Codec<PartyConfig> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("reconnect_grace_ticks", DEFAULT.reconnectGraceTicks).forGetter(PartyConfig::reconnectGraceTicks),
+            Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("invite_ttl_ticks", DEFAULT.inviteTtlTicks).forGetter(PartyConfig::inviteTtlTicks),
+            Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("default_capacity", DEFAULT.defaultCapacity).forGetter(PartyConfig::defaultCapacity),
+            Codec.unboundedMap(Identifier.CODEC, Codec.intRange(1, Integer.MAX_VALUE))
+                    .optionalFieldOf("game_party_limits", DEFAULT.gamePartyLimits).forGetter(PartyConfig::gamePartyLimits),
+            Codec.intRange(1, 100).optionalFieldOf("list_page_size", DEFAULT.listPageSize).forGetter(PartyConfig::listPageSize),
+            EventLog.CODEC.optionalFieldOf("event_log", EventLog.DEFAULT).forGetter(PartyConfig::eventLog),
+            Persistence.CODEC.optionalFieldOf("persistence", Persistence.DEFAULT).forGetter(PartyConfig::persistence),
+            Queue.CODEC.optionalFieldOf("queue", Queue.DEFAULT).forGetter(PartyConfig::queue),
+            TeamBalancing.CODEC.optionalFieldOf("team_balancing", TeamBalancing.DEFAULT).forGetter(PartyConfig::teamBalancing),
+            Federation.CODEC.optionalFieldOf("federation", Federation.DEFAULT).forGetter(PartyConfig::federation),
+            Journal.CODEC.optionalFieldOf("journal", Journal.DEFAULT).forGetter(PartyConfig::journal),
+            RateLimit.CODEC.optionalFieldOf("rate_limit", RateLimit.DEFAULT).forGetter(PartyConfig::rateLimit),
+            Sweep.CODEC.optionalFieldOf("sweep", Sweep.DEFAULT).forGetter(PartyConfig::sweep),
+            Scheduler.CODEC.optionalFieldOf("scheduler", Scheduler.DEFAULT).forGetter(PartyConfig::scheduler)
+    ).apply(instance, PartyConfig::new));
+
+    private static final String FILE_NAME = GameParties.ID + ".json";
+
+    public static PartyConfig load() {
+        var path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            write(path, DEFAULT);
+            return DEFAULT;
+        }
+
+        try (var reader = Files.newBufferedReader(path)) {
+            var json = JsonParser.parseReader(reader);
+            return CODEC.parse(JsonOps.INSTANCE, json)
+                    .resultOrPartial(error -> GameParties.LOGGER.error("Failed to parse {}: {}", FILE_NAME, error))
+                    .orElse(DEFAULT);
+        } catch (IOException | RuntimeException e) {
+            GameParties.LOGGER.error("Failed to read {}", FILE_NAME, e);
+            return DEFAULT;
+        }
+    }
+
+    private static void write(Path path, PartyConfig config) {
+        var json = CODEC.encodeStart(JsonOps.INSTANCE, config).getOrThrow();
+        try {
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, new GsonBuilder().setPrettyPrinting().create().toJson(json));
+        } catch (IOException e) {
+            GameParties.LOGGER.warn("Failed to write default {}", FILE_NAME, e);
+        }
+    }
+
+    /**
+     * @param enabled whether party events are logged at all, off by default
+     * @param bufferSize how many events may wait to be written before new ones are dropped
+     * @param sampling per category, only one in every N events is logged; by default only the categories that grow
+     *                 with player traffic rather than with party changes are sampled
+     */
+    public record EventLog(boolean enabled, int bufferSize, Map<PartyEventLog.Category, Integer> sampling) {
+        public static final EventLog DEFAULT = new EventLog(false, 4096, Map.of(
+                PartyEventLog.Category.INVITE, 4,
+                PartyEventLog.Category.INVITE_EXPIRED, 16,
+                PartyEventLog.Category.LOGOUT, 16,
+                PartyEventLog.Category.LOBBY, 16
+        ));
+
+        public static final Codec<EventLog> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.BOOL.optionalFieldOf("enabled", DEFAULT.enabled).forGetter(EventLog::enabled),
+                Codec.intRange(1, 1 << 20).optionalFieldOf("buffer_size", DEFAULT.bufferSize).forGetter(EventLog::bufferSize),
+                Codec.unboundedMap(PartyEventLog.Category.CODEC, Codec.intRange(1, Integer.MAX_VALUE))
+                        .optionalFieldOf("sampling", DEFAULT.sampling).forGetter(EventLog::sampling)
+        ).apply(instance, EventLog::new));
+
+        public int sampleRate(PartyEventLog.Category category) {
+            return this.sampling.getOrDefault(category, 1);
+        }
+    }
+
+    /**
+     * @param saveIntervalTicks the minimum number of ticks between two background saves while parties keep changing
+     */
+    public record Persistence(boolean enabled, int saveIntervalTicks) {
+        public static final Persistence DEFAULT = new Persistence(false, 100);
+
+        public static final Codec<Persistence> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.BOOL.optionalFieldOf("enabled", DEFAULT.enabled).forGetter(Persistence::enabled),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("save_interval_ticks", DEFAULT.saveIntervalTicks).forGetter(Persistence::saveIntervalTicks)
+        ).apply(instance, Persistence::new));
+    }
+
+    /**
+     * @param intervalTicks how often queued parties are matched to open game spaces
+     * @param defaultSpaceCapacity how many players the queue fills a game space up to
+     * @param spaceCapacities per game config, how many players the queue fills a game space up to
+     */
+    public record Queue(int intervalTicks, int defaultSpaceCapacity, Map<Identifier, Integer> spaceCapacities) {
+        public static final Queue DEFAULT = new Queue(20, 16, Map.of());
+
+        public static final Codec<Queue> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("interval_ticks", DEFAULT.intervalTicks).forGetter(Queue::intervalTicks),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("default_space_capacity", DEFAULT.defaultSpaceCapacity).forGetter(Queue::defaultSpaceCapacity),
+                Codec.unboundedMap(Identifier.CODEC, Codec.intRange(1, Integer.MAX_VALUE))
+                        .optionalFieldOf("space_capacities", DEFAULT.spaceCapacities).forGetter(Queue::spaceCapacities)
+        ).apply(instance, Queue::new));
+    }
+
+    /**
+     * @param teamCounts per game config, the number of teams to balance parties over, for games where parties should
+     *                   not be left to the game's own team allocation
+     * @param maxSteps how many moves or swaps of parties may be made per lobby to improve the balance of the teams
+     */
+    public record TeamBalancing(Map<Identifier, Integer> teamCounts, int maxSteps) {
+        public static final TeamBalancing DEFAULT = new TeamBalancing(Map.of(), 4096);
+
+        public static final Codec<TeamBalancing> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.unboundedMap(Identifier.CODEC, Codec.intRange(1, Integer.MAX_VALUE))
+                        .optionalFieldOf("team_counts", DEFAULT.teamCounts).forGetter(TeamBalancing::teamCounts),
+                Codec.intRange(0, 1_000_000).optionalFieldOf("max_steps", DEFAULT.maxSteps).forGetter(TeamBalancing::maxSteps)
+        ).apply(instance, TeamBalancing::new));
+    }
+
+    /**
+     * @param nodeId the name of this server in the federation, which must be set and stay the same across restarts
+     * @param bind the {@code host:port} to listen on for the other servers
+     * @param peers the {@code host:port} of every other server
+     * @param resyncIntervalTicks how often every party is announced again, so that servers that missed a change or
+     *                            joined late catch up
+     */
+    public record Federation(boolean enabled, String nodeId, String bind, List<String> peers, int resyncIntervalTicks) {
+        public static final Federation DEFAULT = new Federation(false, "", "0.0.0.0:25590", List.of(), 20 * 30);
+
+        public static final Codec<Federation> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.BOOL.optionalFieldOf("enabled", DEFAULT.enabled).forGetter(Federation::enabled),
+                Codec.STRING.optionalFieldOf("node_id", DEFAULT.nodeId).forGetter(Federation::nodeId),
+                Codec.STRING.optionalFieldOf("bind", DEFAULT.bind).forGetter(Federation::bind),
+                Codec.STRING.listOf().optionalFieldOf("peers", DEFAULT.peers).forGetter(Federation::peers),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("resync_interval_ticks", DEFAULT.resyncIntervalTicks).forGetter(Federation::resyncIntervalTicks)
+        ).apply(instance, Federation::new));
+    }
+
+    /**
+     * @param bufferSize how many bytes of journal are collected in memory before they are written out
+     * @param flushIntervalTicks the most ticks that recorded events stay in memory before they are written out
+     */
+    public record Journal(boolean enabled, int bufferSize, int flushIntervalTicks) {
+        public static final Journal DEFAULT = new Journal(false, 1 << 16, 20 * 5);
+
+        public static final Codec<Journal> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.BOOL.optionalFieldOf("enabled", DEFAULT.enabled).forGetter(Journal::enabled),
+                Codec.intRange(1 << 10, 1 << 26).optionalFieldOf("buffer_size", DEFAULT.bufferSize).forGetter(Journal::bufferSize),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("flush_interval_ticks", DEFAULT.flushIntervalTicks).forGetter(Journal::flushIntervalTicks)
+        ).apply(instance, Journal::new));
+    }
+
+    /**
+     * @param evictIntervalTicks how often the buckets of players that have stopped sending requests are dropped
+     */
+    public record RateLimit(boolean enabled, Bucket invite, Bucket accept, Bucket kick, int evictIntervalTicks) {
+        public static final RateLimit DEFAULT = new RateLimit(false, new Bucket(5, 40), new Bucket(5, 20), new Bucket(5, 20), 20 * 60);
+
+        public static final Codec<RateLimit> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.BOOL.optionalFieldOf("enabled", DEFAULT.enabled).forGetter(RateLimit::enabled),
+                Bucket.CODEC.optionalFieldOf("invite", DEFAULT.invite).forGetter(RateLimit::invite),
+                Bucket.CODEC.optionalFieldOf("accept", DEFAULT.accept).forGetter(RateLimit::accept),
+                Bucket.CODEC.optionalFieldOf("kick", DEFAULT.kick).forGetter(RateLimit::kick),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("evict_interval_ticks", DEFAULT.evictIntervalTicks).forGetter(RateLimit::evictIntervalTicks)
+        ).apply(instance, RateLimit::new));
+
+        /**
+         * @param burst how many requests may be sent in a row
+         * @param refillTicks how many ticks it takes to earn back one request
+         */
+        public record Bucket(int burst, int refillTicks) {
+            public static final Codec<Bucket> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                    Codec.intRange(1, 1000).fieldOf("burst").forGetter(Bucket::burst),
+                    Codec.intRange(1, Integer.MAX_VALUE).fieldOf("refill_ticks").forGetter(Bucket::refillTicks)
+            ).apply(instance, Bucket::new));
+        }
+    }
+
+    /**
+     * @param soloTimeoutTicks how long a party may be left with only its owner and no invites before it is disbanded,
+     *                         or 0 to keep such parties
+     * @param partiesPerTick how many parties are checked every tick
+     */
+    public record Sweep(int soloTimeoutTicks, int partiesPerTick) {
+        public static final Sweep DEFAULT = new Sweep(0, 32);
+
+        public static final Codec<Sweep> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("solo_timeout_ticks", DEFAULT.soloTimeoutTicks).forGetter(Sweep::soloTimeoutTicks),
+                Codec.intRange(1, 4096).optionalFieldOf("parties_per_tick", DEFAULT.partiesPerTick).forGetter(Sweep::partiesPerTick)
+        ).apply(instance, Sweep::new));
+    }
+
+    /**
+     * @param budgetNanos how many nanoseconds per tick deferred work may take, or 0 to always finish it in the tick
+     * @param chunkSize how many parties, invites or timeouts a piece of deferred work handles between budget checks
+     */
+    public record Scheduler(int budgetNanos, int chunkSize) {
+        public static final Scheduler DEFAULT = new Scheduler(2_000_000, 64);
+
+        public static final Codec<Scheduler> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.intRange(0, 50_000_000).optionalFieldOf("budget_nanos", DEFAULT.budgetNanos).forGetter(Scheduler::budgetNanos),
+                Codec.intRange(1, 65536).optionalFieldOf("chunk_size", DEFAULT.chunkSize).forGetter(Scheduler::chunkSize)
+        ).apply(instance, Scheduler::new));
+    }
+}
@@ -0,0 +1,188 @@
+package xyz.nucleoid.parties;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A message about a single party, sent from one node to the rest of the federation. Upserts, removals and handoffs are
+ * only sent by the node that owns the party, while any node may report that a member of the party is online on it.
+ * Every node also sends a heartbeat once per resync, so that the others notice when it goes away.
+ *
+ * <pre>
+ * byte    kind
+ * varint  node id length, followed by the node id in UTF-8
+ * varlong node epoch
+ * varlong version
+ * upsert:
+ *   entry   the party, as stored by {@link PartyStorage}
+ * handoff:
+ *   entry   the party, as stored by {@link PartyStorage}
+ *   varint  target node id length, followed by the target node id in UTF-8
+ * remove:
+ *   uuid    party uuid
+ * present, absent:
+ *   uuid    party uuid
+ *   uuid    player uuid
+ * heartbeat:
+ *   nothing more
+ * </pre>
+ *
+ * @param node the node that sent the message
+ * @param epoch when the sending node was started, so that messages of an earlier run of the same node can be told apart
+ * @param party the party the message is about, or {@code null} for heartbeats
+ * @param version increases with every change to the party, so that stale changes can be told apart; 0 for presence
+ * @param entry the full state of the party for upserts and handoffs
+ * @param target the node that owns the party from now on, for handoffs
+ * @param player the member that came online or went offline on the sending node, for presence
+ */
+record PartyDelta(
+        Kind kind,
+        String node,
+        long epoch,
+        @Nullable UUID party,
+        long version,
+        @Nullable PartyStorage.Entry entry,
+        @Nullable String target,
+        @Nullable UUID player
+) {
+    static PartyDelta upsert(String node, long epoch, long version, PartyStorage.Entry entry) {
+        return new PartyDelta(Kind.UPSERT, node, epoch, entry.uuid(), version, entry, null, null);
+    }
+
+    static PartyDelta remove(String node, long epoch, UUID party, long version) {
+        return new PartyDelta(Kind.REMOVE, node, epoch, party, version, null, null, null);
+    }
+
+    static PartyDelta handoff(String node, long epoch, long version, PartyStorage.Entry entry, String target) {
+        return new PartyDelta(Kind.HANDOFF, node, epoch, entry.uuid(), version, entry, target, null);
+    }
+
+    static PartyDelta present(String node, long epoch, UUID party, UUID player) {
+        return new PartyDelta(Kind.PRESENT, node, epoch, party, 0, null, null, player);
+    }
+
+    static PartyDelta absent(String node, long epoch, UUID party, UUID player) {
+        return new PartyDelta(Kind.ABSENT, node, epoch, party, 0, null, null, player);
+    }
+
+    static PartyDelta heartbeat(String node, long epoch) {
+        return new PartyDelta(Kind.HEARTBEAT, node, epoch, null, 0, null, null, null);
+    }
+
+    /**
+     * @return the party or player whose state this message carries, so that a newer message with the same key makes
+     * it obsolete, or {@code null} for heartbeats
+     */
+    @Nullable
+    UUID key() {
+        return this.player != null ? this.player : this.party;
+    }
+
+    ByteBuffer encode() {
+        var node = this.node.getBytes(StandardCharsets.UTF_8);
+        var target = this.target != null ? this.target.getBytes(StandardCharsets.UTF_8) : null;
+        int size = 1 + 5 + node.length + 10 + 10
+                + (this.entry != null ? PartyStorage.maxEntrySize(this.entry) : 16)
+                + (target != null ? 5 + target.length : 0)
+                + (this.player != null ? 16 : 0);
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put((byte) this.kind.ordinal());
+        putString(buffer, node);
+        putVarLong(buffer, this.epoch);
+        putVarLong(buffer, this.version);
+        if (this.entry != null) {
+            PartyStorage.putEntry(buffer, this.entry);
+        } else if (this.party != null) {
+            PartyStorage.putUuid(buffer, this.party);
+        }
+        if (target != null) {
+            putString(buffer, target);
+        }
+        if (this.player != null) {
+            PartyStorage.putUuid(buffer, this.player);
+        }
+        return buffer.flip();
+    }
+
+    static PartyDelta decode(ByteBuffer buffer) throws IOException {
+        try {
+            int kindIndex = buffer.get();
+            if (kindIndex < 0 || kindIndex >= Kind.VALUES.length) {
+                throw new IOException("Unknown party delta kind " + kindIndex);
+            }
+            var kind = Kind.VALUES[kindIndex];
+
+            var node = getString(buffer);
+            long epoch = getVarLong(buffer);
+            long version = getVarLong(buffer);
+            return switch (kind) {
+                case UPSERT -> upsert(node, epoch, version, PartyStorage.getEntry(buffer, PartyStorage.VERSION));
+                case HANDOFF -> {
+                    var entry = PartyStorage.getEntry(buffer, PartyStorage.VERSION);
+                    yield handoff(node, epoch, version, entry, getString(buffer));
+                }
+                case REMOVE -> remove(node, epoch, PartyStorage.getUuid(buffer), version);
+                case PRESENT, ABSENT -> {
+                    var party = PartyStorage.getUuid(buffer);
+                    var player = PartyStorage.getUuid(buffer);
+                    yield new PartyDelta(kind, node, epoch, party, version, null, null, player);
+                }
+                case HEARTBEAT -> heartbeat(node, epoch);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated party delta", e);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        PartyStorage.putVarInt(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = PartyStorage.getVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid node id length " + length);
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarLong too long");
+    }
+
+    enum Kind {
+        UPSERT,
+        REMOVE,
+        HANDOFF,
+        PRESENT,
+        ABSENT,
+        HEARTBEAT;
+
+        static final Kind[] VALUES = values();
+    }
+}
@@ -2,29 +2,43 @@ package xyz.nucleoid.parties;
 
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
 
 public enum PartyError {
-    DOES_NOT_EXIST,
-    ALREADY_INVITED,
-    ALREADY_JOINED,
-    ALREADY_IN_A_PARTY,
-    CANNOT_REMOVE_SELF,
-    NOT_IN_PARTY,
-    NOT_IN_ANY_PARTY,
-    NOT_INVITED,
-    PARTY_FULL;
+    DOES_NOT_EXIST("text.game_parties.party.error.does_not_exist"),
+    ALREADY_INVITED(null),
+    ALREADY_JOINED("text.game_parties.party.error.already_in_party"),
+    ALREADY_IN_A_PARTY("text.game_parties.party.error.already_in_your_party"),
+    CANNOT_REMOVE_SELF("text.game_parties.party.error.cannot_remove_self"),
+    NOT_IN_PARTY(null),
+    NOT_IN_ANY_PARTY("text.game_parties.party.error.not_in_any_party"),
+    NOT_INVITED("text.game_parties.party.error.not_invited"),
+    PARTY_FULL(null),
+    ALREADY_QUEUED("text.game_parties.party.error.already_queued"),
+    NOT_QUEUED("text.game_parties.party.error.not_queued"),
+    RATE_LIMITED("text.game_parties.party.error.rate_limited");
+
+    // built once for the errors whose message takes no arguments
+    @Nullable
+    private final Text text;
+
+    PartyError(@Nullable String key) {
+        this.text = key != null ? Text.translatable(key) : null;
+    }
 
     public static MutableText errorText(PartyError error, String playerName) {
+        return errorText(error, playerName, null);
+    }
+
+    public static MutableText errorText(PartyError error, String playerName, @Nullable Party party) {
         return switch (error) {
-            case DOES_NOT_EXIST -> Text.translatable("text.game_parties.party.error.does_not_exist");
             case ALREADY_INVITED -> Text.translatable("text.game_parties.party.error.already_invited", playerName);
-            case ALREADY_JOINED -> Text.translatable("text.game_parties.party.error.already_in_party");
-            case ALREADY_IN_A_PARTY -> Text.translatable("text.game_parties.party.error.already_in_your_party");
-            case CANNOT_REMOVE_SELF -> Text.translatable("text.game_parties.party.error.cannot_remove_self");
             case NOT_IN_PARTY -> Text.translatable("text.game_parties.party.error.not_in_party", playerName);
-            case NOT_IN_ANY_PARTY -> Text.translatable("text.game_parties.party.error.not_in_any_party");
-            case NOT_INVITED -> Text.translatable("text.game_parties.party.error.not_invited");
-            case PARTY_FULL -> Text.translatable("text.game_parties.party.error.party_full", Party.PARTY_CAPACITY);
+            case PARTY_FULL -> Text.translatable(
+                    "text.game_parties.party.error.party_full",
+                    party != null ? party.getCapacity() : GameParties.getConfig().defaultCapacity()
+            );
+            default -> error.text.copy();
         };
     }
 }
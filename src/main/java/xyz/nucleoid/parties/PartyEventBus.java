@@ -0,0 +1,258 @@
+package xyz.nucleoid.parties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches party changes to registered {@link PartyListener}s. Listeners are kept in an array that is replaced on
+ * registration, so dispatching never locks, and no views are built while nobody is listening.
+ */
+public final class PartyEventBus {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GameParties.ID + "/event_bus");
+    private static final PartyListener[] NO_LISTENERS = new PartyListener[0];
+
+    private volatile PartyListener[] listeners = NO_LISTENERS;
+
+    public synchronized void register(PartyListener listener) {
+        var listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Registers a listener that is called on a thread of its own. Changes are buffered in a queue of the given size, and
+     * dropped when the listener falls that far behind.
+     *
+     * @return the registered listener, to be closed once it is no longer needed
+     */
+    public Async registerAsync(PartyListener listener, int queueSize) {
+        var async = new Async(this, listener, queueSize);
+        this.register(async);
+        return async;
+    }
+
+    public synchronized void unregister(PartyListener listener) {
+        var listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                var remaining = new PartyListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                this.listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    void created(Party party) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onCreated(view);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void memberAdded(Party party, PlayerRef member) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onMemberAdded(view, member);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void memberRemoved(Party party, PlayerRef member) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onMemberRemoved(view, member);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void ownerChanged(Party party, PlayerRef previousOwner) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onOwnerChanged(view, previousOwner);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void inviteSent(Party party, PlayerRef invitee) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onInviteSent(view, invitee);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void inviteExpired(Party party, PlayerRef invitee) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onInviteExpired(view, invitee);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void disbanded(Party party) {
+        var listeners = this.listeners;
+        if (listeners.length != 0) {
+            var view = PartyView.of(party);
+            for (var listener : listeners) {
+                try {
+                    listener.onDisbanded(view);
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    void close() {
+        for (var listener : this.listeners) {
+            if (listener instanceof Async async) {
+                async.close();
+            }
+        }
+    }
+
+    /**
+     * A listener that hands every change to a background thread, which calls the wrapped listener.
+     */
+    public static final class Async implements PartyListener, AutoCloseable {
+        private final PartyEventBus bus;
+        private final PartyListener listener;
+        private final ArrayBlockingQueue<Runnable> queue;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Async(PartyEventBus bus, PartyListener listener, int queueSize) {
+            this.bus = bus;
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+
+            this.thread = new Thread(this::drain, "Game Parties Listener " + listener.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void onCreated(PartyView party) {
+            this.offer(() -> this.listener.onCreated(party));
+        }
+
+        @Override
+        public void onMemberAdded(PartyView party, PlayerRef member) {
+            this.offer(() -> this.listener.onMemberAdded(party, member));
+        }
+
+        @Override
+        public void onMemberRemoved(PartyView party, PlayerRef member) {
+            this.offer(() -> this.listener.onMemberRemoved(party, member));
+        }
+
+        @Override
+        public void onOwnerChanged(PartyView party, PlayerRef previousOwner) {
+            this.offer(() -> this.listener.onOwnerChanged(party, previousOwner));
+        }
+
+        @Override
+        public void onInviteSent(PartyView party, PlayerRef invitee) {
+            this.offer(() -> this.listener.onInviteSent(party, invitee));
+        }
+
+        @Override
+        public void onInviteExpired(PartyView party, PlayerRef invitee) {
+            this.offer(() -> this.listener.onInviteExpired(party, invitee));
+        }
+
+        @Override
+        public void onDisbanded(PartyView party) {
+            this.offer(() -> this.listener.onDisbanded(party));
+        }
+
+        private void offer(Runnable event) {
+            if (!this.queue.offer(event)) {
+                this.dropped.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return how many changes were dropped because the queue was full
+         */
+        public long getDropped() {
+            return this.dropped.get();
+        }
+
+        private void drain() {
+            long reportedDropped = 0;
+            while (this.running || !this.queue.isEmpty()) {
+                try {
+                    var event = this.queue.poll(1, TimeUnit.SECONDS);
+                    if (event != null) {
+                        event.run();
+                    }
+                } catch (InterruptedException e) {
+                    // woken up to shut down: keep draining what is left
+                } catch (Exception e) {
+                    LOGGER.error("Party listener {} failed", this.listener, e);
+                }
+
+                long dropped = this.dropped.get();
+                if (dropped != reportedDropped && this.queue.isEmpty()) {
+                    LOGGER.warn("Dropped {} party changes because listener {} could not keep up", dropped - reportedDropped, this.listener);
+                    reportedDropped = dropped;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            this.bus.unregister(this);
+            this.running = false;
+            this.thread.interrupt();
+        }
+    }
+}
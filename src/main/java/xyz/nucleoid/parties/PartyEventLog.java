@@ -0,0 +1,174 @@
+package xyz.nucleoid.parties;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records party events without blocking the server thread: events are offered to a bounded queue and written to SLF4J
+ * by a background thread. When the queue is full, events are dropped and counted rather than waited on.
+ * <p>
+ * Events are written at INFO to the {@code game_parties/events} logger, and nothing is queued while that logger is
+ * turned off. To keep them out of the server log, give the logger a rolling file of its own in the log4j2
+ * configuration passed with {@code -Dlog4j.configurationFile}, the appender under {@code Appenders} and the logger
+ * under {@code Loggers}:
+ *
+ * <pre>{@code
+ * <RollingRandomAccessFile name="PartyEvents" fileName="logs/party-events.log"
+ *                          filePattern="logs/party-events-%d{yyyy-MM-dd}-%i.log.gz">
+ *     <PatternLayout pattern="%d{ISO8601} %m%n"/>
+ *     <Policies>
+ *         <TimeBasedTriggeringPolicy/>
+ *         <SizeBasedTriggeringPolicy size="100 MB"/>
+ *     </Policies>
+ * </RollingRandomAccessFile>
+ *
+ * <Logger name="game_parties/events" level="info" additivity="false">
+ *     <AppenderRef ref="PartyEvents"/>
+ * </Logger>
+ * }</pre>
+ */
+public final class PartyEventLog implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GameParties.ID + "/events");
+
+    private final boolean enabled;
+    private final ArrayBlockingQueue<Event> queue;
+    private final int[] sampleRates = new int[Category.VALUES.length];
+    private final int[] sampleCounters = new int[Category.VALUES.length];
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Nullable
+    private final Thread drainThread;
+    private volatile boolean running = true;
+
+    PartyEventLog(PartyConfig.EventLog config) {
+        this.enabled = config.enabled() && LOGGER.isInfoEnabled();
+        this.queue = new ArrayBlockingQueue<>(config.bufferSize());
+        for (var category : Category.VALUES) {
+            this.sampleRates[category.ordinal()] = config.sampleRate(category);
+        }
+
+        if (this.enabled) {
+            this.drainThread = new Thread(this::drain, "Game Parties Event Log");
+            this.drainThread.setDaemon(true);
+            this.drainThread.start();
+        } else {
+            this.drainThread = null;
+        }
+    }
+
+    public void log(Category category, UUID party, @Nullable PlayerRef actor, @Nullable PlayerRef target, int size) {
+        if (!this.enabled || !this.sample(category)) {
+            return;
+        }
+
+        var event = new Event(category, System.currentTimeMillis(), party, actor, target, size);
+        if (!this.queue.offer(event)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    public void log(Category category, Party party, @Nullable PlayerRef actor, @Nullable PlayerRef target) {
+        if (this.enabled) {
+            this.log(category, party.getUuid(), actor, target, party.getMembers().size());
+        }
+    }
+
+    private boolean sample(Category category) {
+        int index = category.ordinal();
+        int rate = this.sampleRates[index];
+        if (rate <= 1) {
+            return true;
+        }
+
+        int count = this.sampleCounters[index] + 1;
+        if (count >= rate) {
+            this.sampleCounters[index] = 0;
+            return true;
+        }
+        this.sampleCounters[index] = count;
+        return false;
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    private void drain() {
+        long reportedDropped = 0;
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                var event = this.queue.poll(1, TimeUnit.SECONDS);
+                if (event != null) {
+                    event.write();
+                }
+            } catch (InterruptedException e) {
+                // woken up to shut down: keep draining what is left
+            }
+
+            long dropped = this.dropped.get();
+            if (dropped != reportedDropped && this.queue.isEmpty()) {
+                LOGGER.warn("Dropped {} party events because the event log could not keep up", dropped - reportedDropped);
+                reportedDropped = dropped;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        if (this.drainThread != null) {
+            this.drainThread.interrupt();
+            try {
+                this.drainThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public enum Category implements StringIdentifiable {
+        CREATE,
+        INVITE,
+        INVITE_EXPIRED,
+        ACCEPT,
+        KICK,
+        LEAVE,
+        TRANSFER,
+        DISBAND,
+        LOGOUT,
+        LOBBY;
+
+        static final Category[] VALUES = values();
+        public static final Codec<Category> CODEC = StringIdentifiable.createCodec(Category::values);
+
+        private final String name = this.name().toLowerCase(Locale.ROOT);
+
+        @Override
+        public String asString() {
+            return this.name;
+        }
+    }
+
+    private record Event(Category category, long time, UUID party, @Nullable PlayerRef actor, @Nullable PlayerRef target, int size) {
+        void write() {
+            LOGGER.info(
+                    "event={} time={} party={} actor={} target={} size={}",
+                    this.category.asString(), this.time, this.party, id(this.actor), id(this.target), this.size
+            );
+        }
+
+        private static Object id(@Nullable PlayerRef ref) {
+            return ref != null ? ref.id() : "-";
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanLinkedOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Replicates parties between the servers of a network. Every party is owned by a single node, which is the only one to
+ * change it and send those changes, while other nodes keep a replica of every remote party.
+ * <p>
+ * When a member of a remote party joins another node, that node reports them as present to the owner, which keeps them
+ * in the party for as long as they stay there. The owner only hands the party over to such a node once none of its
+ * members are online on the owner any more, so that a party is never taken away from members that are still playing.
+ * <p>
+ * Every node needs a node id that stays the same across restarts. Each run of a node is told apart by its epoch, the
+ * time it was started at, and the first message of a newer run makes the other nodes forget everything the earlier run
+ * owned, so that the restarted node can announce its parties from scratch. A node that has not been heard from for
+ * {@value #NODE_TIMEOUT_RESYNCS} resync intervals is considered gone: the other nodes drop the parties it owned, and
+ * the members of those parties have no party anywhere else until the node comes back and announces them again.
+ * <p>
+ * Messages are received on transport threads but only decoded and applied on the server thread, and outgoing changes
+ * are coalesced per party and sent once per tick.
+ */
+final class PartyFederation implements AutoCloseable {
+    private static final int NODE_TIMEOUT_RESYNCS = 3;
+
+    private final String nodeId;
+    private final long epoch;
+    private final FederationTransport transport;
+    private final int resyncIntervalTicks;
+    private final ConcurrentLinkedQueue<ByteBuffer> inbox = new ConcurrentLinkedQueue<>();
+
+    // every other node that has been heard from, by node id
+    private final Object2ObjectMap<String, Peer> peers = new Object2ObjectOpenHashMap<>();
+
+    // the last known state of every party on the network, by party uuid
+    private final Object2ObjectMap<UUID, Replica> replicas = new Object2ObjectOpenHashMap<>();
+    // the replica of the remote party of each player
+    private final Object2ObjectMap<UUID, Replica> remoteMembers = new Object2ObjectOpenHashMap<>();
+    // the node that each player online elsewhere was last reported on
+    private final Object2ObjectMap<UUID, Presence> remotePresence = new Object2ObjectOpenHashMap<>();
+    // players online on this node whose party is owned by another node, and that party
+    private final Object2ObjectMap<UUID, UUID> hostedRemoteMembers = new Object2ObjectOpenHashMap<>();
+    // local parties that may be ready to be handed over to another node
+    private final ObjectLinkedOpenHashSet<UUID> handoffCandidates = new ObjectLinkedOpenHashSet<>();
+    // local parties changed this tick, and whether they still exist
+    private final Reference2BooleanLinkedOpenHashMap<Party> changed = new Reference2BooleanLinkedOpenHashMap<>();
+    private long tick;
+    private int ticksSinceResync;
+
+    PartyFederation(String nodeId, long epoch, FederationTransport transport, int resyncIntervalTicks) {
+        this.nodeId = nodeId;
+        this.epoch = epoch;
+        this.transport = transport;
+        this.resyncIntervalTicks = resyncIntervalTicks;
+        // announce every local party on the first tick
+        this.ticksSinceResync = resyncIntervalTicks;
+
+        transport.start(this.inbox::add);
+    }
+
+    @Nullable
+    static PartyFederation create(PartyConfig.Federation config) {
+        if (config.nodeId().isEmpty()) {
+            GameParties.LOGGER.error("The party federation needs a node_id that stays the same across restarts, parties will not be shared");
+            return null;
+        }
+
+        try {
+            var bindAddress = SocketTransport.parseAddress(config.bind());
+            var peers = config.peers().stream().map(SocketTransport::parseAddress).toList();
+            var nodeId = config.nodeId();
+
+            GameParties.LOGGER.info("Joining party federation as {} with {} peers", nodeId, peers.size());
+            var transport = new SocketTransport(bindAddress, peers);
+            return new PartyFederation(nodeId, System.currentTimeMillis(), transport, config.resyncIntervalTicks());
+        } catch (IllegalArgumentException e) {
+            GameParties.LOGGER.error("Invalid party federation config, parties will not be shared", e);
+            return null;
+        }
+    }
+
+    void onPartyChanged(Party party, boolean registered) {
+        this.changed.put(party, registered);
+    }
+
+    /**
+     * Reports a player that joined this node without a local party as present to the owner of their remote party.
+     *
+     * @param localParty the local party of the player, if they have one
+     */
+    void onPlayerJoined(UUID player, @Nullable Party localParty) {
+        this.remotePresence.remove(player);
+        if (localParty != null) {
+            return;
+        }
+
+        var replica = this.remoteMembers.get(player);
+        if (replica != null && replica.entry != null) {
+            var party = replica.entry.uuid();
+            this.hostedRemoteMembers.put(player, party);
+            this.broadcast(PartyDelta.present(this.nodeId, this.epoch, party, player));
+        }
+    }
+
+    /**
+     * @param localParty the local party of the player, which may now be ready to be handed over
+     */
+    void onPlayerLeft(UUID player, @Nullable Party localParty) {
+        if (localParty != null) {
+            this.handoffCandidates.add(localParty.getUuid());
+        }
+
+        var party = this.hostedRemoteMembers.remove(player);
+        if (party != null) {
+            this.broadcast(PartyDelta.absent(this.nodeId, this.epoch, party, player));
+        }
+    }
+
+    /**
+     * @return whether the given player belongs to a party that another node owns
+     */
+    boolean isInRemoteParty(UUID player) {
+        return this.remoteMembers.containsKey(player);
+    }
+
+    /**
+     * @return whether the given player is online on another node of the federation
+     */
+    boolean isPresentElsewhere(UUID player) {
+        return this.remotePresence.containsKey(player);
+    }
+
+    /**
+     * Applies the changes received from other nodes, hands over local parties whose members have all moved to other
+     * nodes and sends the changes made to local parties.
+     *
+     * @param localParties every party on this node, re-announced every {@code resyncIntervalTicks}
+     */
+    void tick(Collection<Party> localParties, Host host) {
+        this.tick++;
+
+        ByteBuffer message;
+        while ((message = this.inbox.poll()) != null) {
+            try {
+                this.apply(PartyDelta.decode(message), host);
+            } catch (IOException e) {
+                GameParties.LOGGER.warn("Dropped malformed party federation message", e);
+            }
+        }
+
+        if (++this.ticksSinceResync >= this.resyncIntervalTicks) {
+            this.ticksSinceResync = 0;
+            this.resync(localParties, host);
+        }
+
+        if (!this.handoffCandidates.isEmpty()) {
+            for (var uuid : this.handoffCandidates) {
+                var party = host.getParty(uuid);
+                if (party != null) {
+                    this.tryHandoff(party, host);
+                }
+            }
+            this.handoffCandidates.clear();
+        }
+
+        if (!this.changed.isEmpty()) {
+            for (var entry : this.changed.reference2BooleanEntrySet()) {
+                this.send(entry.getKey(), entry.getBooleanValue());
+            }
+            this.changed.clear();
+        }
+    }
+
+    private void resync(Collection<Party> localParties, Host host) {
+        this.broadcast(PartyDelta.heartbeat(this.nodeId, this.epoch));
+        for (var party : localParties) {
+            this.changed.putIfAbsent(party, true);
+        }
+        this.announceHostedMembers();
+
+        long silentSince = this.tick - (long) NODE_TIMEOUT_RESYNCS * this.resyncIntervalTicks;
+        var peers = this.peers.object2ObjectEntrySet().iterator();
+        while (peers.hasNext()) {
+            var peer = peers.next();
+            if (peer.getValue().lastHeardTick < silentSince) {
+                var node = peer.getKey();
+                GameParties.LOGGER.warn("Party federation node {} has gone silent, dropping its parties", node);
+                peers.remove();
+                this.forgetNode(node, true, host);
+            }
+        }
+
+        // every node re-reports its players each resync, so anyone not heard of for two has left with their node
+        long expiry = this.tick - 2L * this.resyncIntervalTicks;
+        var iterator = this.remotePresence.object2ObjectEntrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var presence = entry.getValue();
+            if (presence.tick < expiry) {
+                var player = entry.getKey();
+                iterator.remove();
+                this.onAbsent(presence.party, player, host);
+            }
+        }
+    }
+
+    private void announceHostedMembers() {
+        for (var entry : this.hostedRemoteMembers.object2ObjectEntrySet()) {
+            this.broadcast(PartyDelta.present(this.nodeId, this.epoch, entry.getValue(), entry.getKey()));
+        }
+    }
+
+    /**
+     * Drops the parties that a node owned, and forgets which players were online on it.
+     *
+     * @param gone whether the node has gone away for good, rather than restarted
+     */
+    private void forgetNode(String node, boolean gone, Host host) {
+        var replicas = this.replicas.object2ObjectEntrySet().iterator();
+        while (replicas.hasNext()) {
+            var entry = replicas.next();
+            var replica = entry.getValue();
+            if (replica.owner.equals(node)) {
+                var party = entry.getKey();
+                this.unindexMembers(replica);
+                replicas.remove();
+                if (gone) {
+                    this.hostedRemoteMembers.values().removeIf(party::equals);
+                }
+            }
+        }
+
+        var presences = this.remotePresence.object2ObjectEntrySet().iterator();
+        while (presences.hasNext()) {
+            var entry = presences.next();
+            var presence = entry.getValue();
+            if (presence.node.equals(node)) {
+                var player = entry.getKey();
+                presences.remove();
+                this.onAbsent(presence.party, player, host);
+            }
+        }
+    }
+
+    /**
+     * Notes that a node has been heard from, and forgets what an earlier run of it owned if it has restarted.
+     *
+     * @return whether the message is from the current run of the node and should be applied
+     */
+    private boolean hearFrom(PartyDelta delta, Host host) {
+        if (delta.node().equals(this.nodeId)) {
+            // another node has been given the same id, or an earlier run of this one is still sending
+            return false;
+        }
+
+        var peer = this.peers.get(delta.node());
+        if (peer == null) {
+            this.peers.put(delta.node(), new Peer(delta.epoch(), this.tick));
+            return true;
+        }
+
+        if (delta.epoch() < peer.epoch) {
+            // still in flight from before the node restarted
+            return false;
+        }
+        if (delta.epoch() > peer.epoch) {
+            peer.epoch = delta.epoch();
+            this.forgetNode(delta.node(), false, host);
+            // the restarted node no longer knows who is online here
+            this.announceHostedMembers();
+        }
+        peer.lastHeardTick = this.tick;
+        return true;
+    }
+
+    private void tryHandoff(Party party, Host host) {
+        var replica = this.replicas.get(party.getUuid());
+        if (replica == null || !replica.owner.equals(this.nodeId) || host.hostsOnlineMember(party)) {
+            return;
+        }
+
+        String target = null;
+        for (var member : party.getMembers()) {
+            var presence = this.remotePresence.get(member.id());
+            if (presence != null) {
+                target = presence.node;
+                break;
+            }
+        }
+        if (target == null) {
+            return;
+        }
+
+        var entry = PartyStorage.Entry.of(party);
+        this.unindexMembers(replica);
+        replica.owner = target;
+        replica.version++;
+        replica.entry = entry;
+        this.indexMembers(replica);
+        this.broadcast(PartyDelta.handoff(this.nodeId, this.epoch, replica.version, entry, target));
+        host.release(party);
+    }
+
+    private void send(Party party, boolean registered) {
+        var uuid = party.getUuid();
+        var replica = this.replicas.get(uuid);
+        if (replica == null) {
+            if (!registered) {
+                return;
+            }
+            replica = new Replica(this.nodeId);
+            this.replicas.put(uuid, replica);
+        } else if (!replica.owner.equals(this.nodeId)) {
+            // the party has been handed over to another node since it changed here
+            return;
+        }
+
+        replica.version++;
+        if (registered) {
+            this.broadcast(PartyDelta.upsert(this.nodeId, this.epoch, replica.version, PartyStorage.Entry.of(party)));
+        } else {
+            this.replicas.remove(uuid);
+            this.broadcast(PartyDelta.remove(this.nodeId, this.epoch, uuid, replica.version));
+        }
+    }
+
+    private void broadcast(PartyDelta delta) {
+        var key = delta.key();
+        if (key != null) {
+            this.transport.broadcast(delta.encode(), key);
+        } else {
+            this.transport.broadcast(delta.encode());
+        }
+    }
+
+    private void apply(PartyDelta delta, Host host) {
+        if (!this.hearFrom(delta, host)) {
+            return;
+        }
+
+        switch (delta.kind()) {
+            case HEARTBEAT -> {
+                return;
+            }
+            case PRESENT -> {
+                this.remotePresence.put(delta.player(), new Presence(delta.node(), delta.party(), this.tick));
+                var party = this.getOwnedParty(delta.party(), host);
+                if (party != null && party.contains(new PlayerRef(delta.player()))) {
+                    host.memberPresent(party, delta.player());
+                    this.handoffCandidates.add(delta.party());
+                }
+                return;
+            }
+            case ABSENT -> {
+                var presence = this.remotePresence.get(delta.player());
+                if (presence != null && presence.node.equals(delta.node())) {
+                    this.remotePresence.remove(delta.player());
+                    this.onAbsent(delta.party(), delta.player(), host);
+                }
+                return;
+            }
+            default -> {
+            }
+        }
+
+        var replica = this.replicas.get(delta.party());
+        if (replica != null && !isNewer(delta, replica)) {
+            return;
+        }
+
+        if (replica != null && replica.owner.equals(this.nodeId)) {
+            var party = host.getParty(delta.party());
+            if (party != null) {
+                if (host.hostsOnlineMember(party)) {
+                    // another node took the party while its members are still playing here, so keep it and outvote them
+                    replica.version = delta.version();
+                    this.changed.put(party, true);
+                    return;
+                }
+                host.release(party);
+            }
+        }
+
+        switch (delta.kind()) {
+            case UPSERT, HANDOFF -> {
+                if (replica == null) {
+                    replica = new Replica(delta.node());
+                    this.replicas.put(delta.party(), replica);
+                }
+                this.unindexMembers(replica);
+                replica.owner = delta.kind() == PartyDelta.Kind.HANDOFF ? delta.target() : delta.node();
+                replica.version = delta.version();
+                replica.entry = delta.entry();
+                this.indexMembers(replica);
+
+                if (replica.owner.equals(this.nodeId)) {
+                    this.adopt(replica, host);
+                }
+            }
+            case REMOVE -> {
+                if (replica != null) {
+                    this.unindexMembers(replica);
+                    this.replicas.remove(delta.party());
+                }
+                this.hostedRemoteMembers.values().removeIf(delta.party()::equals);
+            }
+        }
+    }
+
+    private void adopt(Replica replica, Host host) {
+        var entry = replica.entry;
+        for (var member : entry.members()) {
+            this.hostedRemoteMembers.remove(member, entry.uuid());
+        }
+
+        if (host.adopt(entry) == null) {
+            // every member has joined another party here in the meantime
+            this.replicas.remove(entry.uuid());
+            this.broadcast(PartyDelta.remove(this.nodeId, this.epoch, entry.uuid(), replica.version + 1));
+        }
+    }
+
+    private void onAbsent(UUID partyId, UUID player, Host host) {
+        var party = this.getOwnedParty(partyId, host);
+        if (party != null && party.contains(new PlayerRef(player))) {
+            host.memberAbsent(party, player);
+        }
+    }
+
+    @Nullable
+    private Party getOwnedParty(UUID uuid, Host host) {
+        var replica = this.replicas.get(uuid);
+        return replica != null && replica.owner.equals(this.nodeId) ? host.getParty(uuid) : null;
+    }
+
+    /**
+     * Versions are only compared within the current run of every node, as a restarted node has forgotten its counters
+     * and had its earlier parties dropped by {@link #hearFrom} before its first change is applied.
+     */
+    private static boolean isNewer(PartyDelta delta, Replica replica) {
+        if (delta.version() != replica.version) {
+            return delta.version() > replica.version;
+        }
+        // two nodes changed the party at once: the same node wins everywhere
+        return delta.node().compareTo(replica.owner) > 0;
+    }
+
+    private void indexMembers(Replica replica) {
+        if (replica.entry != null && !replica.owner.equals(this.nodeId)) {
+            for (var member : replica.entry.members()) {
+                this.remoteMembers.put(member, replica);
+            }
+        }
+    }
+
+    private void unindexMembers(Replica replica) {
+        if (replica.entry != null) {
+            for (var member : replica.entry.members()) {
+                this.remoteMembers.remove(member, replica);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.transport.close();
+    }
+
+    /**
+     * The side of the federation that lives in {@link PartyManager}.
+     */
+    interface Host {
+        @Nullable
+        Party getParty(UUID uuid);
+
+        /**
+         * @return whether any member of the party is online on this node
+         */
+        boolean hostsOnlineMember(Party party);
+
+        /**
+         * Adds a party that has been handed over to this node.
+         *
+         * @return the party, or {@code null} if none of its members could be kept
+         */
+        @Nullable
+        Party adopt(PartyStorage.Entry entry);
+
+        /**
+         * Drops a local party that another node owns from now on, without disbanding it.
+         */
+        void release(Party party);
+
+        /**
+         * Called when a member of a party owned here is online on another node, so that they are kept in the party.
+         */
+        void memberPresent(Party party, UUID player);
+
+        /**
+         * Called when a member of a party owned here is no longer online on any other node.
+         */
+        void memberAbsent(Party party, UUID player);
+    }
+
+    private record Presence(String node, UUID party, long tick) {
+    }
+
+    private static final class Peer {
+        long epoch;
+        long lastHeardTick;
+
+        Peer(long epoch, long lastHeardTick) {
+            this.epoch = epoch;
+            this.lastHeardTick = lastHeardTick;
+        }
+    }
+
+    private static final class Replica {
+        String owner;
+        long version;
+        @Nullable
+        PartyStorage.Entry entry;
+
+        Replica(String owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package xyz.nucleoid.parties;
+
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records every operation on the {@link PartyManager} together with its outcome, as well as players joining and leaving
+ * the server and games, so that the traffic of a live server can be replayed offline against a headless manager.
+ * <p>
+ * Events are encoded into a direct buffer on the server thread and only written to the file when the buffer fills up
+ * or every {@code flushIntervalTicks}, so recording an event never makes a system call. If writing fails, the journal
+ * logs the error once and discards everything recorded from then on.
+ *
+ * <pre>
+ * int     magic
+ * varint  version
+ * varint  reconnect grace ticks, invite ttl ticks and default capacity of the recording server
+ * event:
+ *   byte    kind
+ *   varint  ticks since the previous event
+ *   ...     the arguments of the kind, then for operations the outcome:
+ *             byte    0 for ok, otherwise the error ordinal + 1
+ *             uuid?   the party of the result, or for batches a varint count followed by party uuids
+ * uuid?: byte 0 for null, or byte 1 followed by the uuid
+ * </pre>
+ */
+final class PartyJournal implements AutoCloseable {
+    static final int MAGIC = 0x47504a4c; // GPJL
+    static final int VERSION = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int flushIntervalTicks;
+
+    private int tick;
+    private int lastEventTick;
+    private int ticksSinceFlush;
+    private boolean failed;
+
+    private PartyJournal(Path path, FileChannel channel, PartyConfig.Journal config) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(config.bufferSize());
+        this.flushIntervalTicks = config.flushIntervalTicks();
+    }
+
+    static PartyJournal open(Path path, PartyConfig config) throws IOException {
+        Files.createDirectories(path.getParent());
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        var journal = new PartyJournal(path, channel, config.journal());
+
+        journal.buffer.putInt(MAGIC);
+        journal.putVarInt(VERSION);
+        journal.putVarInt(config.reconnectGraceTicks());
+        journal.putVarInt(config.inviteTtlTicks());
+        journal.putVarInt(config.defaultCapacity());
+        return journal;
+    }
+
+    void tick() {
+        this.tick++;
+        if (++this.ticksSinceFlush >= this.flushIntervalTicks) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Records a party that was added without an operation, such as one restored from storage.
+     */
+    void restored(Party party) {
+        this.begin(Kind.RESTORE);
+        var entry = PartyStorage.Entry.of(party);
+        this.putUuid(entry.uuid());
+        this.putVarInt(entry.ownerIndex());
+        this.putUuids(entry.members());
+        this.putUuids(entry.pendingMembers());
+        this.putVarInt(entry.capacity());
+    }
+
+    void released(UUID party) {
+        this.begin(Kind.RELEASE);
+        this.putUuid(party);
+    }
+
+    void reclaimed(UUID party) {
+        this.begin(Kind.RECLAIM);
+        this.putUuid(party);
+    }
+
+    void player(Kind kind, PlayerRef player) {
+        this.begin(kind);
+        this.putUuid(player.id());
+    }
+
+    void operation(Kind kind, PlayerRef actor, @Nullable PlayerRef target, PartyResult result) {
+        this.begin(kind);
+        this.putUuid(actor.id());
+        if (kind.hasTarget) {
+            this.putUuid(target.id());
+        }
+        this.putResult(result);
+    }
+
+    void partyOperation(Kind kind, PlayerRef player, @Nullable Party party, PartyResult result) {
+        this.begin(kind);
+        this.putUuid(player.id());
+        this.putParty(party);
+        this.putResult(result);
+    }
+
+    void queue(PlayerRef owner, Identifier gameId, PartyResult result) {
+        this.begin(Kind.QUEUE);
+        this.putUuid(owner.id());
+        this.putString(gameId.toString());
+        this.putResult(result);
+    }
+
+    void capacity(@Nullable Party party, int capacity, PartyResult result) {
+        this.begin(Kind.SET_CAPACITY);
+        this.putParty(party);
+        this.putVarInt(capacity);
+        this.putResult(result);
+    }
+
+    void createParties(List<? extends List<PlayerRef>> roster, PartyBatchResult result) {
+        this.begin(Kind.BULK_CREATE);
+        this.putVarInt(roster.size());
+        for (var group : roster) {
+            this.putRefs(group);
+        }
+        this.putBatchResult(result);
+    }
+
+    void movePlayers(Collection<PlayerRef> players, @Nullable Party party, PartyBatchResult result) {
+        this.begin(Kind.BULK_MOVE);
+        this.putRefs(players);
+        this.putParty(party);
+        this.putBatchResult(result);
+    }
+
+    void disbandParties(Collection<PlayerRef> players, PartyBatchResult result) {
+        this.begin(Kind.BULK_DISBAND);
+        this.putRefs(players);
+        this.putBatchResult(result);
+    }
+
+    /**
+     * @param partySize how many members the party owned by the player had, or 0 if they did not own one
+     */
+    void gameJoin(PlayerRef player, int partySize) {
+        this.begin(Kind.GAME_JOIN);
+        this.putUuid(player.id());
+        this.putVarInt(partySize);
+    }
+
+    /**
+     * @param groups how many party groups the players of the lobby were split into
+     */
+    void lobbyFinalize(Collection<PlayerRef> players, int groups) {
+        this.begin(Kind.LOBBY_FINALIZE);
+        this.putRefs(players);
+        this.putVarInt(groups);
+    }
+
+    private void begin(Kind kind) {
+        this.ensure(1 + 5);
+        this.buffer.put((byte) kind.ordinal());
+        PartyStorage.putVarInt(this.buffer, this.tick - this.lastEventTick);
+        this.lastEventTick = this.tick;
+    }
+
+    private void putResult(PartyResult result) {
+        this.putError(result.error());
+        this.putParty(result.party());
+    }
+
+    private void putBatchResult(PartyBatchResult result) {
+        this.putError(result.error());
+        var parties = result.parties();
+        this.putVarInt(parties.size());
+        for (var party : parties) {
+            this.putUuid(party.getUuid());
+        }
+    }
+
+    private void putError(@Nullable PartyError error) {
+        this.ensure(1);
+        this.buffer.put((byte) (error != null ? error.ordinal() + 1 : 0));
+    }
+
+    private void putParty(@Nullable Party party) {
+        this.ensure(1);
+        if (party != null) {
+            this.buffer.put((byte) 1);
+            this.putUuid(party.getUuid());
+        } else {
+            this.buffer.put((byte) 0);
+        }
+    }
+
+    private void putRefs(Collection<PlayerRef> players) {
+        this.putVarInt(players.size());
+        for (var player : players) {
+            this.putUuid(player.id());
+        }
+    }
+
+    private void putUuids(UUID[] uuids) {
+        this.putVarInt(uuids.length);
+        for (var uuid : uuids) {
+            this.putUuid(uuid);
+        }
+    }
+
+    private void putUuid(UUID uuid) {
+        this.ensure(16);
+        PartyStorage.putUuid(this.buffer, uuid);
+    }
+
+    private void putVarInt(int value) {
+        this.ensure(5);
+        PartyStorage.putVarInt(this.buffer, value);
+    }
+
+    private void putString(String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.putVarInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            this.ensure(1);
+            int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (this.buffer.remaining() < bytes) {
+            this.flush();
+        }
+    }
+
+    void flush() {
+        this.ticksSinceFlush = 0;
+        this.buffer.flip();
+        if (!this.failed) {
+            try {
+                while (this.buffer.hasRemaining()) {
+                    this.channel.write(this.buffer);
+                }
+            } catch (IOException e) {
+                GameParties.LOGGER.error("Failed to write party journal to {}, no longer recording", this.path, e);
+                this.failed = true;
+            }
+        }
+        this.buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        this.flush();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            GameParties.LOGGER.warn("Failed to close party journal {}", this.path, e);
+        }
+    }
+
+    enum Kind {
+        RESTORE(false),
+        RELEASE(false),
+        JOIN(false),
+        DISCONNECT(false),
+        INVITE(true),
+        KICK(true),
+        ACCEPT(false),
+        LEAVE(false),
+        TRANSFER(true),
+        DISBAND(false),
+        QUEUE(false),
+        UNQUEUE(false),
+        ADD(false),
+        SET_CAPACITY(false),
+        REMOVE(false),
+        BULK_CREATE(false),
+        BULK_MOVE(false),
+        BULK_DISBAND(false),
+        GAME_JOIN(false),
+        LOBBY_FINALIZE(false),
+        RECLAIM(false);
+
+        static final Kind[] VALUES = values();
+
+        // whether an operation of this kind names a second player after its actor
+        final boolean hasTarget;
+
+        Kind(boolean hasTarget) {
+            this.hasTarget = hasTarget;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package xyz.nucleoid.parties;
+
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+/**
+ * Receives changes to parties from a {@link PartyEventBus}. Listeners are called on the server thread right after the
+ * change, unless registered with {@link PartyEventBus#registerAsync}. Every party is passed as an immutable view of its
+ * state after the change.
+ */
+public interface PartyListener {
+    default void onCreated(PartyView party) {
+    }
+
+    default void onMemberAdded(PartyView party, PlayerRef member) {
+    }
+
+    default void onMemberRemoved(PartyView party, PlayerRef member) {
+    }
+
+    default void onOwnerChanged(PartyView party, PlayerRef previousOwner) {
+    }
+
+    default void onInviteSent(PartyView party, PlayerRef invitee) {
+    }
+
+    default void onInviteExpired(PartyView party, PlayerRef invitee) {
+    }
+
+    /**
+     * @param party the party as it was when it was disbanded
+     */
+    default void onDisbanded(PartyView party) {
+    }
+}
@@ -1,33 +1,167 @@
 package xyz.nucleoid.parties;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.objects.Object2ObjectAVLTreeMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectArrayMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSets;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
-import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
 import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.plasmid.api.event.GameEvents;
+import xyz.nucleoid.plasmid.api.game.GameSpace;
 import xyz.nucleoid.plasmid.api.game.GameSpaceManager;
 import xyz.nucleoid.plasmid.api.util.PlayerRef;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+/**
+ * Tracks the parties on a server. Parties are owned by the server thread and may only be modified there (see
+ * {@link #submit}), while the {@link PartyView} snapshots published after every change may be read from any thread
+ * without locking.
+ */
 public final class PartyManager {
-    private static PartyManager instance;
+    private static final String METRICS_FILE = GameParties.ID + "_metrics.prom";
+    private static final String JOURNAL_DIRECTORY = GameParties.ID + "_journal";
+    private static final DateTimeFormatter JOURNAL_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
 
+    private static volatile PartyManager instance;
+
+    @Nullable
     private final MinecraftServer server;
-    private final Object2ObjectMap<PlayerRef, Party> playerToParty = new Object2ObjectOpenHashMap<>();
+    private final PartyPresence presence;
+    private final UuidMap<Party> playerToParty = new UuidMap<>();
+    private final Object2ObjectMap<UUID, Party> parties = new Object2ObjectOpenHashMap<>();
+    private final Collection<Party> partiesView = Collections.unmodifiableCollection(this.parties.values());
+    // the same parties ordered by UUID, so that they can be listed a page at a time
+    private final Object2ObjectSortedMap<UUID, Party> sortedParties = new Object2ObjectAVLTreeMap<>();
+    private final Object2ObjectMap<PlayerRef, Reference2ObjectMap<Party, TickTimerWheel.Timeout<Runnable>>> inviteeToParties = new Object2ObjectOpenHashMap<>();
+
+    // immutable snapshots of every party for readers on other threads, replaced on the server thread after each change
+    private final Map<UUID, PartyView> views = new ConcurrentHashMap<>();
+    private final Map<UUID, PartyView> memberViews = new ConcurrentHashMap<>();
+    private final Collection<PartyView> partyViews = Collections.unmodifiableCollection(this.views.values());
+
+    private final TickTimerWheel<Runnable> timers = new TickTimerWheel<>(512);
+    private final int reconnectGraceTicks;
+    private final int inviteTtlTicks;
+    private final int defaultCapacity;
+    private final Map<Identifier, Integer> gamePartyLimits;
+    private final PartyConfig.TeamBalancing teamBalancing;
+    private final UuidMap<TickTimerWheel.Timeout<Runnable>> offlineMembers = new UuidMap<>();
+
+    private final PartyEventLog eventLog;
+    private final PartyMetrics metrics = new PartyMetrics();
+    private final PartyNotifier notifier = new PartyNotifier();
+    private final PartyEventBus events = new PartyEventBus();
+    private final PartyQueue queue;
+    // the invite message of each party, which names its owner and so is dropped whenever the owner changes, and rebuilt
+    // whenever the display name it was built with no longer matches, such as after the owner joined another team
+    private final Object2ObjectMap<UUID, InviteText> inviteTexts = new Object2ObjectOpenHashMap<>();
+
+    @Nullable
+    private PartyStorage storage;
+    @Nullable
+    private final PartyFederation federation;
+    private final FederationHost federationHost = new FederationHost();
+    @Nullable
+    private final PartyJournal journal;
+    @Nullable
+    private final PartyRateLimiter rateLimiter;
+    private final PartySweeper sweeper;
+    private final PartyWorkScheduler work;
+    private final int workChunkSize;
+    // timeouts that are due, waiting for the scheduler to run them
+    private final ObjectArrayFIFOQueue<Runnable> dueTimeouts = new ObjectArrayFIFOQueue<>();
+    private final int saveIntervalTicks;
+    private int ticksSinceSave;
+    private boolean dirty;
+
+    // while a bulk operation is applied, the parties it changed, published together once it is done
+    @Nullable
+    private ReferenceLinkedOpenHashSet<Party> batchChanged;
+
+    private PartyManager(PartyPresence presence, PartyConfig config, @Nullable PartyFederation federation) {
+        this.server = presence.getServer();
+        this.presence = presence;
+        this.reconnectGraceTicks = config.reconnectGraceTicks();
+        this.inviteTtlTicks = config.inviteTtlTicks();
+        this.defaultCapacity = config.defaultCapacity();
+        this.gamePartyLimits = config.gamePartyLimits();
+        this.teamBalancing = config.teamBalancing();
+        this.eventLog = new PartyEventLog(config.eventLog());
+        this.queue = new PartyQueue(config.queue());
+        this.rateLimiter = config.rateLimit().enabled() ? new PartyRateLimiter(config.rateLimit()) : null;
+        this.sweeper = new PartySweeper(config.sweep());
+        this.work = new PartyWorkScheduler(config.scheduler());
+        this.workChunkSize = config.scheduler().chunkSize();
+        this.federation = federation;
+
+        this.saveIntervalTicks = config.persistence().saveIntervalTicks();
+        if (config.persistence().enabled() && this.server != null) {
+            this.storage = new PartyStorage(this.server);
+            this.restore(this.storage.load());
+        }
+
+        this.journal = config.journal().enabled() && this.server != null ? this.openJournal(this.server, config) : null;
+    }
 
-    private PartyManager(MinecraftServer server) {
-        this.server = server;
+    @Nullable
+    private PartyJournal openJournal(MinecraftServer server, PartyConfig config) {
+        var name = LocalDateTime.now().format(JOURNAL_NAME_FORMAT) + ".bin";
+        var path = server.getSavePath(WorldSavePath.ROOT).resolve(JOURNAL_DIRECTORY).resolve(name);
+        try {
+            var journal = PartyJournal.open(path, config);
+            // a replay starts without any parties, so it needs to be told about the ones restored from storage
+            for (var party : this.parties.values()) {
+                journal.restored(party);
+            }
+            GameParties.LOGGER.info("Recording party journal to {}", path);
+            return journal;
+        } catch (IOException e) {
+            GameParties.LOGGER.error("Failed to open party journal {}", path, e);
+            return null;
+        }
     }
 
     @SuppressWarnings("UnstableApiUsage")
     public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(PartyManager::get);
+        ServerLifecycleEvents.SERVER_STOPPING.register(PartyManager::onServerStopping);
+        ServerLifecycleEvents.SERVER_STOPPED.register(PartyManager::onServerStopped);
+        ServerTickEvents.END_SERVER_TICK.register(server -> PartyManager.get(server).tick());
+
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
             var partyManager = PartyManager.get(server);
             partyManager.onPlayerJoin(handler.player);
@@ -38,82 +172,611 @@ public final class PartyManager {
             partyManager.onPlayerLogOut(handler.player);
         });
 
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
+            var partyManager = PartyManager.get(newPlayer.getWorld().getServer());
+            partyManager.invalidateOnlineMembers(newPlayer.getUuid());
+        });
+
         GameEvents.COLLECT_PLAYERS_FOR_JOIN.register((gameSpace, player, additional) -> {
             var partyManager = PartyManager.get(player.getWorld().getServer());
-            var gameSpaceManager = GameSpaceManager.get();
-
-            var members = partyManager.getPartyMembers(player, true);
-
-            for (var member : members) {
-                if (!gameSpaceManager.inGame(member)) {
-                    additional.add(member);
-                }
+            long start = partyManager.metrics.start();
+            partyManager.journalGameJoin(player);
+            if (partyManager.fitsGamePartyLimit(gameSpace, player)) {
+                partyManager.forEachPartyMember(player, true, additional, (collector, member) -> {
+                    if (!GameSpaceManager.get().inGame(member)) {
+                        collector.add(member);
+                    }
+                });
             }
+            partyManager.metrics.record(PartyMetrics.Operation.COLLECT_PLAYERS_FOR_JOIN, start);
         });
 
         GameEvents.TEAM_SELECTION_LOBBY_FINALIZE.register((gameSpace, allocator, players) -> {
             var partyManager = PartyManager.get(gameSpace.getServer());
+            long start = partyManager.metrics.start();
+            partyManager.allocateTeams(gameSpace, players, members -> allocator.group(members));
+            partyManager.metrics.record(PartyMetrics.Operation.LOBBY_FINALIZE, start);
+        });
+    }
 
-            var ungroupedPlayers = players.stream().collect(Collectors.toCollection(HashSet::new));
+    public static synchronized PartyManager get(MinecraftServer server) {
+        if (instance == null || instance.server != server) {
+            if (instance != null) {
+                instance.close();
+            }
+            var config = GameParties.getConfig();
+            instance = new PartyManager(PartyPresence.of(server), config, createFederation(config));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a manager that is not attached to any server, for driving parties outside the game such as in the
+     * simulator. It never saves parties, and must be ticked and told about players joining and leaving by its caller.
+     */
+    static PartyManager headless(PartyPresence presence, PartyConfig config) {
+        return new PartyManager(presence, config, createFederation(config));
+    }
+
+    /**
+     * Creates a headless manager that shares its parties with other nodes over the given transport, such as several
+     * managers in one process joined by a {@link LoopbackTransport}.
+     *
+     * @param epoch when this run of the node started, which must be later than any earlier run of the same node
+     */
+    static PartyManager headless(PartyPresence presence, PartyConfig config, FederationTransport transport, String nodeId, long epoch) {
+        var federation = new PartyFederation(nodeId, epoch, transport, config.federation().resyncIntervalTicks());
+        return new PartyManager(presence, config, federation);
+    }
+
+    @Nullable
+    private static PartyFederation createFederation(PartyConfig config) {
+        return config.federation().enabled() ? PartyFederation.create(config.federation()) : null;
+    }
+
+    private static void onServerStopping(MinecraftServer server) {
+        // save before players are disconnected, as that would otherwise remove them from their parties
+        if (instance != null && instance.server == server) {
+            instance.closeStorage();
+        }
+    }
+
+    private static synchronized void onServerStopped(MinecraftServer server) {
+        if (instance != null && instance.server == server) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    void close() {
+        this.work.drain();
+        this.closeStorage();
+        this.eventLog.close();
+        this.events.close();
+        if (this.federation != null) {
+            this.federation.close();
+        }
+        if (this.journal != null) {
+            this.journal.close();
+        }
+    }
+
+    void tick() {
+        this.timers.tick(this::deferTimeout);
+        this.sweep();
+        this.work.tick();
+        this.tickQueue();
+        if (this.federation != null) {
+            this.federation.tick(this.partiesView, this.federationHost);
+        }
+        this.notifier.flush();
+
+        this.ticksSinceSave++;
+        if (this.storage != null && this.dirty && this.ticksSinceSave >= this.saveIntervalTicks) {
+            this.storage.saveAsync(this.snapshot());
+            this.dirty = false;
+            this.ticksSinceSave = 0;
+        }
+
+        if (this.rateLimiter != null) {
+            this.rateLimiter.tick();
+        }
+        if (this.journal != null) {
+            this.journal.tick();
+        }
+    }
+
+    private void tickQueue() {
+        // a headless manager has no game spaces to admit parties into
+        if (this.server == null || this.queue.size() == 0) {
+            return;
+        }
 
-            for (ServerPlayerEntity player : players) {
-                if (ungroupedPlayers.contains(player)) {
-                    var members = partyManager.getPartyMembers(player, false);
-                    System.out.println(player.getNameForScoreboard() + " members: " + members.stream().map(PlayerEntity::getNameForScoreboard).toList());
-                    allocator.group(members);
-                    ungroupedPlayers.removeAll(members);
+        long start = this.metrics.start();
+        this.queue.tick((party, gameId) -> {
+            var message = PartyTexts.queueAdmitted(gameId).formatted(Formatting.GREEN);
+            party.forEachOnlineMember(message, (text, player) -> player.sendMessage(text));
+        });
+        this.metrics.record(PartyMetrics.Operation.QUEUE_ADMIT, start);
+    }
+
+    /**
+     * Hands a due timeout to the scheduler rather than running it right away, so that a burst of timeouts, such as
+     * every member of a dropped proxy running out of reconnect grace at once, is spread over several ticks.
+     */
+    private void deferTimeout(Runnable action) {
+        if (this.dueTimeouts.isEmpty()) {
+            this.work.submit(this::runDueTimeouts);
+        }
+        this.dueTimeouts.enqueue(action);
+    }
+
+    private boolean runDueTimeouts() {
+        for (int i = 0; i < this.workChunkSize && !this.dueTimeouts.isEmpty(); i++) {
+            this.dueTimeouts.dequeue().run();
+        }
+        return this.dueTimeouts.isEmpty();
+    }
+
+    /**
+     * Checks the next few parties for invites that can no longer be accepted or expire, and disbands parties that have
+     * been left with only their owner for too long, such as those created by an invite that nobody accepted.
+     */
+    private void sweep() {
+        var slice = this.sweeper.nextSlice(this.sortedParties);
+        for (int i = 0; i < slice.size(); i++) {
+            var party = slice.get(i);
+            this.purgeDanglingInvites(party);
+
+            boolean solo = party.getMembers().size() == 1
+                    && party.getPendingMembers().isEmpty()
+                    && this.queue.getQueuedGame(party) == null;
+            if (this.sweeper.isAbandoned(party, solo)) {
+                this.reclaimParty(party);
+            }
+        }
+    }
+
+    private void purgeDanglingInvites(Party party) {
+        var pendingMembers = party.getPendingMembers();
+        if (pendingMembers.isEmpty()) {
+            return;
+        }
+
+        ObjectArrayList<PlayerRef> dangling = null;
+        for (var invitee : pendingMembers) {
+            var parties = this.inviteeToParties.get(invitee);
+            if (parties == null || !parties.containsKey(party) || party.contains(invitee)) {
+                if (dangling == null) {
+                    dangling = new ObjectArrayList<>();
                 }
+                dangling.add(invitee);
             }
-        });
+        }
+
+        if (dangling != null) {
+            for (var invitee : dangling) {
+                party.cancelInvite(invitee);
+                this.unindexInvite(invitee, party);
+            }
+            this.onPartyChanged(party);
+        }
     }
 
-    public static PartyManager get(MinecraftServer server) {
-        if (instance == null || instance.server != server) {
-            instance = new PartyManager(server);
+    /**
+     * Disbands a party that the sweep found abandoned, or that was reclaimed in a journal being replayed.
+     */
+    void reclaimParty(Party party) {
+        if (this.journal != null) {
+            this.journal.reclaimed(party.getUuid());
         }
-        return instance;
+        this.notifyParty(party, PartyNotifier.Kind.DISBANDED, null);
+        this.disbandParty(party);
     }
 
-    public void onPlayerJoin(ServerPlayerEntity player) {
-        var ref = PlayerRef.of(player);
+    private void closeStorage() {
+        if (this.storage != null) {
+            this.storage.save(this.snapshot());
+            this.storage = null;
+        }
+    }
 
-        for (var party : this.getAllParties()) {
-            if (party.isInvited(ref)) {
-                party.getOwner().ifOnline(this.server, owner -> {
-                    var notification = PartyTexts.invitedReceiver(owner, party.getUuid());
-                    player.sendMessage(notification.formatted(Formatting.GREEN));
-                });
+    private List<PartyStorage.Entry> snapshot() {
+        var entries = new ObjectArrayList<PartyStorage.Entry>(this.parties.size());
+        for (var party : this.parties.values()) {
+            entries.add(PartyStorage.Entry.of(party));
+        }
+        return entries;
+    }
+
+    private void restore(List<PartyStorage.Entry> entries) {
+        for (var entry : entries) {
+            var party = this.restoreEntry(entry);
+            if (party != null) {
+                this.publish(party);
             }
         }
+
+        if (!entries.isEmpty()) {
+            GameParties.LOGGER.info("Restored {} parties", this.parties.size());
+        }
     }
 
-    public void onPlayerLogOut(ServerPlayerEntity player) {
-        var ref = PlayerRef.of(player);
+    @Nullable
+    private Party restoreEntry(PartyStorage.Entry entry) {
+        var members = entry.members();
+        if (members.length == 0 || this.parties.containsKey(entry.uuid())) {
+            return null;
+        }
 
-        var party = this.playerToParty.remove(ref);
+        // players who are already in another party stay there
+        Party party = null;
+        int capacity = entry.capacity() > 0 ? entry.capacity() : this.defaultCapacity;
+        for (var member : members) {
+            if (this.playerToParty.containsKey(member)) {
+                continue;
+            }
+            if (party == null) {
+                party = new Party(this.presence, entry.uuid(), new PlayerRef(member), capacity);
+            } else {
+                party.add(new PlayerRef(member));
+            }
+        }
         if (party == null) {
-            return;
+            return null;
+        }
+
+        int ownerIndex = entry.ownerIndex();
+        if (ownerIndex >= 0 && ownerIndex < members.length) {
+            // falls back to the first member that was kept if the owner was not
+            party.setOwner(new PlayerRef(members[ownerIndex]));
+        }
+
+        for (var member : party.getMembers()) {
+            this.playerToParty.put(member.id(), party);
+            // like at logout, without any grace the member is still removed through a timeout on the next tick
+            if (!this.isOnlineAnywhere(member.id())) {
+                this.markOffline(member, this.presence.getName(member));
+            }
+        }
+        for (var invitee : entry.pendingMembers()) {
+            var ref = new PlayerRef(invitee);
+            if (party.invite(ref)) {
+                this.indexInvite(ref, party);
+            }
         }
-        party.getMemberPlayers().sendMessage(PartyTexts.leftGame(player));
-        removePlayerFromParty(ref, party);
+        this.parties.put(party.getUuid(), party);
+        this.sortedParties.put(party.getUuid(), party);
+        this.events.created(party);
+        return party;
+    }
+
+    /**
+     * Adds a party exactly as it was captured elsewhere, keeping its UUID, such as when replaying a journal.
+     */
+    @Nullable
+    Party restoreParty(PartyStorage.Entry entry) {
+        var party = this.restoreEntry(entry);
+        if (party != null) {
+            this.onPartyChanged(party);
+        }
+        return party;
+    }
+
+    /**
+     * @return whether the player belongs to a party that another server of the federation owns
+     */
+    boolean isInRemoteParty(PlayerRef player) {
+        return this.federation != null && this.federation.isInRemoteParty(player.id());
+    }
+
+    private boolean isInAnyParty(PlayerRef player) {
+        return this.playerToParty.containsKey(player.id()) || this.isInRemoteParty(player);
+    }
+
+    private boolean isOnlineAnywhere(UUID player) {
+        return this.presence.isOnline(player) || this.federation != null && this.federation.isPresentElsewhere(player);
+    }
+
+    /**
+     * Drops a local party that another server of the federation has taken over. The party is not disbanded, so
+     * listeners are not told about it.
+     */
+    void releaseParty(UUID uuid) {
+        var party = this.parties.get(uuid);
+        if (party != null) {
+            if (this.journal != null) {
+                this.journal.released(uuid);
+            }
+            this.removeParty(party, false);
+        }
+    }
+
+    private void onPartyChanged(Party party) {
+        this.dirty = true;
+
+        if (this.batchChanged != null) {
+            this.batchChanged.add(party);
+        } else {
+            this.publishChange(party);
+        }
+    }
+
+    private void publishChange(Party party) {
+        boolean registered = this.parties.get(party.getUuid()) == party;
+        if (registered) {
+            this.publish(party);
+        } else {
+            this.unpublish(party);
+        }
+
+        if (this.federation != null) {
+            this.federation.onPartyChanged(party, registered);
+        }
+    }
+
+    private void publish(Party party) {
+        var view = PartyView.of(party);
+        this.views.put(view.uuid(), view);
+        for (var member : view.members()) {
+            this.memberViews.put(member.id(), view);
+        }
+    }
+
+    private void unpublish(Party party) {
+        var view = this.views.remove(party.getUuid());
+        if (view != null) {
+            for (var member : view.members()) {
+                this.memberViews.remove(member.id(), view);
+            }
+        }
+    }
+
+    private void assertOnServerThread() {
+        // a headless manager has no server thread, and is only ever driven from a single thread by its caller
+        if (this.server != null && !this.server.isOnThread()) {
+            throw new IllegalStateException("Parties can only be modified on the server thread, use PartyManager.submit instead");
+        }
+    }
+
+    /**
+     * Runs the given action on the server thread, where parties may be modified. This is how code running on other
+     * threads should change party state.
+     */
+    public <T> CompletableFuture<T> submit(Function<PartyManager, T> action) {
+        if (this.server == null) {
+            return CompletableFuture.completedFuture(action.apply(this));
+        }
+        return CompletableFuture.supplyAsync(() -> action.apply(this), this.server);
+    }
+
+    /**
+     * @return the latest snapshot of the party with the given UUID; this may be called from any thread
+     */
+    @Nullable
+    public PartyView getPartyView(UUID uuid) {
+        return this.views.get(uuid);
+    }
+
+    /**
+     * @return the latest snapshot of the party that the given player is a member of; this may be called from any thread
+     */
+    @Nullable
+    public PartyView getPartyViewOf(PlayerRef player) {
+        return this.memberViews.get(player.id());
+    }
+
+    /**
+     * @return a live view over the latest snapshot of every party; this may be iterated from any thread
+     */
+    public Collection<PartyView> getPartyViews() {
+        return this.partyViews;
+    }
+
+    /**
+     * @return the id of the game config the game space was opened from, or {@code null} if it has none
+     */
+    @Nullable
+    static Identifier gameIdOf(GameSpace gameSpace) {
+        return gameSpace.getMetadata().sourceConfig().getKey().map(RegistryKey::getValue).orElse(null);
+    }
+
+    private void journalGameJoin(ServerPlayerEntity player) {
+        if (this.journal != null) {
+            var ref = PlayerRef.of(player);
+            var party = this.getOwnParty(ref);
+            this.journal.gameJoin(ref, party != null ? party.getMembers().size() : 0);
+        }
+    }
+
+    /**
+     * Checks whether the party owned by the given player may be brought into the given game together. If it is larger
+     * than the limit configured for the game, the owner is told and joins alone.
+     */
+    private boolean fitsGamePartyLimit(GameSpace gameSpace, ServerPlayerEntity owner) {
+        if (this.gamePartyLimits.isEmpty()) {
+            return true;
+        }
+
+        var party = this.getPartyOf(owner, true);
+        var gameId = gameIdOf(gameSpace);
+        Integer limit = gameId != null ? this.gamePartyLimits.get(gameId) : null;
+        if (party == null || limit == null) {
+            return true;
+        }
+
+        var gameSpaceManager = GameSpaceManager.get();
+        int joining = 0;
+        for (var member : party.getOnlineMembers()) {
+            if (member == owner || !gameSpaceManager.inGame(member)) {
+                joining++;
+            }
+        }
+
+        if (joining > limit) {
+            owner.sendMessage(PartyTexts.partyTooLargeForGame(limit).formatted(Formatting.RED));
+            return false;
+        }
+        return true;
+    }
+
+    public void onPlayerJoin(ServerPlayerEntity player) {
+        this.onPlayerJoin(PlayerRef.of(player), player);
+    }
+
+    void onPlayerJoin(PlayerRef ref, @Nullable ServerPlayerEntity player) {
+        long start = this.metrics.start();
+        this.invalidateOnlineMembers(ref.id());
+
+        this.clearOffline(ref);
+        if (this.federation != null) {
+            this.federation.onPlayerJoined(ref.id(), this.playerToParty.get(ref.id()));
+        }
+
+        var invitingParties = this.getInvitingParties(ref);
+        if (player != null && !invitingParties.isEmpty()) {
+            this.work.submit(new InviteScan(ref, invitingParties.toArray(new Party[0])));
+        }
+
+        this.metrics.record(PartyMetrics.Operation.PLAYER_JOIN, start);
+        if (this.journal != null) {
+            this.journal.player(PartyJournal.Kind.JOIN, ref);
+        }
+    }
+
+    public void onPlayerLogOut(ServerPlayerEntity player) {
+        this.onPlayerLogOut(PlayerRef.of(player), player.getDisplayName());
+    }
+
+    void onPlayerLogOut(PlayerRef ref, Text name) {
+        long start = this.metrics.start();
+        this.invalidateOnlineMembers(ref.id());
+
+        // without any grace the player is still removed through a timeout, which fires on the next tick, so that
+        // removing the members of a dropped proxy is spread out like any other burst of timeouts
+        var party = this.playerToParty.get(ref.id());
+        if (party != null && (this.federation == null || !this.federation.isPresentElsewhere(ref.id()))) {
+            this.markOffline(ref, name);
+        }
+        if (this.federation != null) {
+            this.federation.onPlayerLeft(ref.id(), party);
+        }
+
+        this.metrics.record(PartyMetrics.Operation.PLAYER_LOG_OUT, start);
+        if (this.journal != null) {
+            this.journal.player(PartyJournal.Kind.DISCONNECT, ref);
+        }
+    }
+
+    private void markOffline(PlayerRef ref, Text name) {
+        var timeout = this.timers.schedule(this.reconnectGraceTicks, () -> {
+            // the player may have reconnected while the timeout waited for its turn, or logged out again since
+            var current = this.offlineMembers.get(ref.id());
+            if (current != null && !current.isPending()) {
+                this.offlineMembers.remove(ref.id());
+                this.removeOfflineMember(ref, name);
+            }
+        });
+
+        var previous = this.offlineMembers.put(ref.id(), timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void clearOffline(PlayerRef ref) {
+        var timeout = this.offlineMembers.remove(ref.id());
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void removeOfflineMember(PlayerRef ref, Text name) {
+        var party = this.playerToParty.get(ref.id());
+        if (party != null) {
+            this.eventLog.log(PartyEventLog.Category.LOGOUT, party, ref, null);
+            this.notifyParty(party, PartyNotifier.Kind.LEFT_GAME, name);
+            this.removePlayerFromParty(ref, party);
+        }
+    }
+
+    /**
+     * @return the message sent to players invited to the given party, built once per party and owner
+     */
+    Text getInviteText(Party party, ServerPlayerEntity owner) {
+        var ownerName = owner.getDisplayName();
+        var inviteText = this.inviteTexts.get(party.getUuid());
+        if (inviteText == null || !inviteText.ownerName().equals(ownerName)) {
+            var text = PartyTexts.invitedReceiver(owner, party.getUuid()).formatted(Formatting.GREEN);
+            inviteText = new InviteText(ownerName, text);
+            this.inviteTexts.put(party.getUuid(), inviteText);
+        }
+        return inviteText.text();
+    }
+
+    private record InviteText(Text ownerName, Text text) {
+    }
+
+    /**
+     * Queues a message for the online members of the given party, to be sent together with other messages of the same
+     * kind at the end of the tick.
+     */
+    void notifyParty(Party party, PartyNotifier.Kind kind, @Nullable Text subject) {
+        this.notifier.notify(party, kind, subject);
+    }
+
+    /**
+     * @return whether the given member has disconnected and still keeps their place in their party for a while
+     */
+    public boolean isAwaitingReconnect(PlayerRef member) {
+        return this.offlineMembers.containsKey(member.id());
     }
 
     public PartyResult invitePlayer(PlayerRef owner, PlayerRef player) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryInvitePlayer(owner, player);
+        this.metrics.record(PartyMetrics.Operation.INVITE, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.INVITE, owner, player, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryInvitePlayer(PlayerRef owner, PlayerRef player) {
         var party = this.getOrCreateOwnParty(owner);
         if (party != null) {
             if (party.isFull()) {
-                return PartyResult.err(PartyError.PARTY_FULL);
+                return PartyResult.err(PartyError.PARTY_FULL, party);
             }
             if (party.contains(player)) {
                 return PartyResult.err(PartyError.ALREADY_JOINED);
             }
-            return party.invite(player) ? PartyResult.ok(party) : PartyResult.err(PartyError.ALREADY_INVITED);
+            if (party.invite(player)) {
+                this.indexInvite(player, party);
+                this.eventLog.log(PartyEventLog.Category.INVITE, party, owner, player);
+                this.onPartyChanged(party);
+                this.events.inviteSent(party, player);
+                return PartyResult.ok(party);
+            }
+            return PartyResult.err(PartyError.ALREADY_INVITED);
         }
 
-        return PartyResult.err(PartyError.DOES_NOT_EXIST);
+        return PartyResult.err(this.isInRemoteParty(owner) ? PartyError.ALREADY_IN_A_PARTY : PartyError.DOES_NOT_EXIST);
     }
 
     public PartyResult kickPlayer(PlayerRef owner, PlayerRef player) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryKickPlayer(owner, player);
+        this.metrics.record(PartyMetrics.Operation.KICK, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.KICK, owner, player, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryKickPlayer(PlayerRef owner, PlayerRef player) {
         if (owner.equals(player)) {
             return PartyResult.err(PartyError.CANNOT_REMOVE_SELF);
         }
@@ -127,12 +790,24 @@ public final class PartyManager {
             return PartyResult.err(PartyError.NOT_IN_PARTY);
         }
 
+        this.eventLog.log(PartyEventLog.Category.KICK, party, owner, player);
         removePlayerFromParty(player, party);
         return PartyResult.ok(party);
     }
 
     public PartyResult acceptInvite(PlayerRef player, @Nullable Party party) {
-        if (this.playerToParty.containsKey(player)) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryAcceptInvite(player, party);
+        this.metrics.record(PartyMetrics.Operation.ACCEPT, result, start);
+        if (this.journal != null) {
+            this.journal.partyOperation(PartyJournal.Kind.ACCEPT, player, party, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryAcceptInvite(PlayerRef player, @Nullable Party party) {
+        if (this.isInAnyParty(player)) {
             return PartyResult.err(PartyError.ALREADY_IN_A_PARTY);
         }
 
@@ -141,31 +816,89 @@ public final class PartyManager {
         }
 
         if (party.isFull()) {
-            return PartyResult.err(PartyError.PARTY_FULL);
+            return PartyResult.err(PartyError.PARTY_FULL, party);
         }
 
         if (party.acceptInvite(player)) {
-            this.playerToParty.put(player, party);
+            this.unindexInvite(player, party);
+            this.playerToParty.put(player.id(), party);
+            this.eventLog.log(PartyEventLog.Category.ACCEPT, party, player, null);
+            this.onPartyChanged(party);
+            this.events.memberAdded(party, player);
             return PartyResult.ok(party);
         }
 
         return PartyResult.err(PartyError.NOT_INVITED);
     }
 
+    /**
+     * Takes a token for a request that a player made through a command. Only commands are throttled, so that other mods
+     * calling into this manager are never turned down, and requests turned down here never reach the manager.
+     *
+     * @param target the player the request is aimed at, if they should be protected from being flooded with requests
+     * @return whether the request has to be turned down
+     */
+    boolean isRateLimited(PartyRateLimiter.Action action, PlayerRef sender, @Nullable PlayerRef target) {
+        this.assertOnServerThread();
+        if (this.rateLimiter == null) {
+            return false;
+        }
+
+        long start = this.metrics.start();
+        if (this.rateLimiter.tryAcquire(action, sender, target)) {
+            return false;
+        }
+
+        var operation = switch (action) {
+            case INVITE -> PartyMetrics.Operation.INVITE;
+            case ACCEPT -> PartyMetrics.Operation.ACCEPT;
+            case KICK -> PartyMetrics.Operation.KICK;
+        };
+        this.metrics.record(operation, PartyError.RATE_LIMITED, start);
+        return true;
+    }
+
     public PartyResult leaveParty(PlayerRef player) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryLeaveParty(player);
+        this.metrics.record(PartyMetrics.Operation.LEAVE, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.LEAVE, player, null, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryLeaveParty(PlayerRef player) {
         var party = this.getParty(player);
         if (party == null) {
             return PartyResult.err(PartyError.NOT_IN_PARTY);
         }
 
+        this.eventLog.log(PartyEventLog.Category.LEAVE, party, player, null);
         removePlayerFromParty(player, party);
         return PartyResult.ok(party);
     }
 
     public PartyResult transferParty(PlayerRef from, PlayerRef to) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryTransferParty(from, to);
+        this.metrics.record(PartyMetrics.Operation.TRANSFER, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.TRANSFER, from, to, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryTransferParty(PlayerRef from, PlayerRef to) {
         var party = this.getOwnParty(from);
         if (party != null) {
             if (party.setOwner(to)) {
+                this.inviteTexts.remove(party.getUuid());
+                this.eventLog.log(PartyEventLog.Category.TRANSFER, party, from, to);
+                this.onPartyChanged(party);
+                this.events.ownerChanged(party, from);
                 return PartyResult.ok(party);
             }
             return PartyResult.err(PartyError.NOT_IN_PARTY);
@@ -175,6 +908,17 @@ public final class PartyManager {
     }
 
     public PartyResult disband(PlayerRef owner) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryDisband(owner);
+        this.metrics.record(PartyMetrics.Operation.DISBAND, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.DISBAND, owner, null, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryDisband(PlayerRef owner) {
         var party = this.getOwnParty(owner);
         if (party != null) {
             this.disbandParty(party);
@@ -184,7 +928,76 @@ public final class PartyManager {
         }
     }
 
+    /**
+     * Queues the owner's party for the given game, replacing any game it was queued for before. The party is admitted
+     * into an open game space of that game as soon as one has room for all of its online members.
+     */
+    public PartyResult queueParty(PlayerRef owner, Identifier gameId) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryQueueParty(owner, gameId);
+        this.metrics.record(PartyMetrics.Operation.QUEUE, result, start);
+        if (this.journal != null) {
+            this.journal.queue(owner, gameId, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryQueueParty(PlayerRef owner, Identifier gameId) {
+        var party = this.getOrCreateOwnParty(owner);
+        if (party == null) {
+            return PartyResult.err(this.isInRemoteParty(owner) ? PartyError.ALREADY_IN_A_PARTY : PartyError.DOES_NOT_EXIST);
+        }
+
+        if (!this.queue.enqueue(party, gameId)) {
+            return PartyResult.err(PartyError.ALREADY_QUEUED, party);
+        }
+        return PartyResult.ok(party);
+    }
+
+    public PartyResult unqueueParty(PlayerRef owner) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryUnqueueParty(owner);
+        this.metrics.record(PartyMetrics.Operation.UNQUEUE, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.UNQUEUE, owner, null, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryUnqueueParty(PlayerRef owner) {
+        var party = this.getOwnParty(owner);
+        if (party == null) {
+            return PartyResult.err(PartyError.DOES_NOT_EXIST);
+        }
+
+        if (this.queue.remove(party) == null) {
+            return PartyResult.err(PartyError.NOT_QUEUED, party);
+        }
+        return PartyResult.ok(party);
+    }
+
+    /**
+     * @return the game the party is queued for, or {@code null} if it is not queued
+     */
+    @Nullable
+    public Identifier getQueuedGame(Party party) {
+        return this.queue.getQueuedGame(party);
+    }
+
     public PartyResult addPlayer(PlayerRef player, @Nullable Party party) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryAddPlayer(player, party);
+        this.metrics.record(PartyMetrics.Operation.ADD, result, start);
+        if (this.journal != null) {
+            this.journal.partyOperation(PartyJournal.Kind.ADD, player, party, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryAddPlayer(PlayerRef player, @Nullable Party party) {
         if (party == null) {
             return PartyResult.err(PartyError.DOES_NOT_EXIST);
         }
@@ -195,19 +1008,52 @@ public final class PartyManager {
         }
 
         if (party.isFull()) {
-            return PartyResult.err(PartyError.PARTY_FULL);
+            return PartyResult.err(PartyError.PARTY_FULL, party);
         }
 
         if (oldParty != null) {
             this.removePlayerFromParty(player, oldParty);
         }
         party.add(player);
-        this.playerToParty.put(player, party);
+        this.unindexInvite(player, party);
+        this.playerToParty.put(player.id(), party);
+        this.onPartyChanged(party);
+        this.events.memberAdded(party, player);
+
+        return PartyResult.ok(party);
+    }
+
+    public PartyResult setCapacity(@Nullable Party party, int capacity) {
+        this.assertOnServerThread();
+        var result = this.trySetCapacity(party, capacity);
+        if (this.journal != null) {
+            this.journal.capacity(party, capacity, result);
+        }
+        return result;
+    }
+
+    private PartyResult trySetCapacity(@Nullable Party party, int capacity) {
+        if (party == null) {
+            return PartyResult.err(PartyError.DOES_NOT_EXIST);
+        }
 
+        party.setCapacity(capacity);
+        this.onPartyChanged(party);
         return PartyResult.ok(party);
     }
 
     public PartyResult removePlayer(PlayerRef player) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryRemovePlayer(player);
+        this.metrics.record(PartyMetrics.Operation.REMOVE, result, start);
+        if (this.journal != null) {
+            this.journal.operation(PartyJournal.Kind.REMOVE, player, null, result);
+        }
+        return result;
+    }
+
+    private PartyResult tryRemovePlayer(PlayerRef player) {
         var party = this.getParty(player);
         if (party == null) {
             return PartyResult.err(PartyError.NOT_IN_ANY_PARTY);
@@ -216,58 +1062,245 @@ public final class PartyManager {
         return PartyResult.ok(party);
     }
 
+    /**
+     * Creates a party for every group of the roster, owned by the first player of the group. The roster is rejected as a
+     * whole if any player is listed twice or already in a party, or if a group is larger than the default capacity.
+     */
+    public PartyBatchResult createParties(List<? extends List<PlayerRef>> roster) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryCreateParties(roster);
+        this.metrics.record(PartyMetrics.Operation.BULK_CREATE, result.error(), start);
+        if (this.journal != null) {
+            this.journal.createParties(roster, result);
+        }
+        return result;
+    }
+
+    private PartyBatchResult tryCreateParties(List<? extends List<PlayerRef>> roster) {
+        var seen = new ObjectOpenHashSet<PlayerRef>();
+        for (var group : roster) {
+            if (group.size() > this.defaultCapacity) {
+                return PartyBatchResult.err(PartyError.PARTY_FULL, group.get(this.defaultCapacity));
+            }
+            for (var player : group) {
+                if (!seen.add(player)) {
+                    return PartyBatchResult.err(PartyError.ALREADY_JOINED, player);
+                }
+                if (this.isInAnyParty(player)) {
+                    return PartyBatchResult.err(PartyError.ALREADY_IN_A_PARTY, player);
+                }
+            }
+        }
+
+        var parties = new ObjectArrayList<Party>(roster.size());
+        this.applyBatch(() -> {
+            for (var group : roster) {
+                if (group.isEmpty()) {
+                    continue;
+                }
+
+                var owner = group.get(0);
+                var party = this.createParty(owner);
+                this.playerToParty.put(owner.id(), party);
+                for (int i = 1; i < group.size(); i++) {
+                    var member = group.get(i);
+                    party.add(member);
+                    this.playerToParty.put(member.id(), party);
+                    this.eventLog.log(PartyEventLog.Category.ACCEPT, party, member, null);
+                    this.events.memberAdded(party, member);
+                }
+                this.onPartyChanged(party);
+                parties.add(party);
+            }
+        });
+
+        return PartyBatchResult.ok(parties);
+    }
+
+    /**
+     * Moves every given player into the party, taking them out of their current parties. The batch is rejected as a
+     * whole if the party does not have room for all of them.
+     */
+    public PartyBatchResult movePlayers(Collection<PlayerRef> players, @Nullable Party party) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryMovePlayers(players, party);
+        this.metrics.record(PartyMetrics.Operation.BULK_MOVE, result.error(), start);
+        if (this.journal != null) {
+            this.journal.movePlayers(players, party, result);
+        }
+        return result;
+    }
+
+    private PartyBatchResult tryMovePlayers(Collection<PlayerRef> players, @Nullable Party party) {
+        if (party == null) {
+            return PartyBatchResult.err(PartyError.DOES_NOT_EXIST, null);
+        }
+
+        var incoming = new ObjectLinkedOpenHashSet<PlayerRef>(players.size());
+        for (var player : players) {
+            if (!party.contains(player)) {
+                incoming.add(player);
+            }
+        }
+
+        if (incoming.isEmpty()) {
+            return PartyBatchResult.err(PartyError.ALREADY_JOINED, null, party);
+        }
+
+        int room = party.getCapacity() - party.getMembers().size();
+        if (incoming.size() > room) {
+            var culprit = Iterables.get(incoming, Math.max(room, 0));
+            return PartyBatchResult.err(PartyError.PARTY_FULL, culprit, party);
+        }
+
+        this.applyBatch(() -> {
+            for (var player : incoming) {
+                var oldParty = this.getParty(player);
+                if (oldParty != null) {
+                    this.removePlayerFromParty(player, oldParty);
+                }
+                party.add(player);
+                this.unindexInvite(player, party);
+                this.playerToParty.put(player.id(), party);
+                this.events.memberAdded(party, player);
+            }
+            this.onPartyChanged(party);
+        });
+
+        return PartyBatchResult.ok(List.of(party));
+    }
+
+    /**
+     * Disbands every party that any of the given players is a member of.
+     */
+    public PartyBatchResult disbandParties(Collection<PlayerRef> players) {
+        this.assertOnServerThread();
+        long start = this.metrics.start();
+        var result = this.tryDisbandParties(players);
+        this.metrics.record(PartyMetrics.Operation.BULK_DISBAND, result.error(), start);
+        if (this.journal != null) {
+            this.journal.disbandParties(players, result);
+        }
+        return result;
+    }
+
+    private PartyBatchResult tryDisbandParties(Collection<PlayerRef> players) {
+        var parties = new ReferenceLinkedOpenHashSet<Party>();
+        for (var player : players) {
+            var party = this.getParty(player);
+            if (party != null) {
+                parties.add(party);
+            }
+        }
+
+        if (parties.isEmpty()) {
+            return PartyBatchResult.err(PartyError.NOT_IN_ANY_PARTY, null);
+        }
+
+        this.applyBatch(() -> {
+            for (var party : parties) {
+                this.disbandParty(party);
+            }
+        });
+
+        return PartyBatchResult.ok(List.copyOf(parties));
+    }
+
+    /**
+     * Applies every change made by the given action before publishing any of the parties it touched, so that readers
+     * never observe a batch half applied.
+     */
+    private void applyBatch(Runnable action) {
+        var changed = new ReferenceLinkedOpenHashSet<Party>();
+        this.batchChanged = changed;
+        try {
+            action.run();
+        } finally {
+            this.batchChanged = null;
+            for (var party : changed) {
+                this.publishChange(party);
+            }
+        }
+    }
+
     private void removePlayerFromParty(PlayerRef ref, Party party) {
-        var player = Objects.requireNonNull(ref.getEntity(this.server));
         boolean isOwner = party.isOwner(ref);
         if (party.remove(ref)) {
-            this.playerToParty.remove(ref, party);
-            if (isOwner) {
-                this.onPartyOwnerLeave(player, party);
+            this.playerToParty.remove(ref.id(), party);
+            this.memberViews.remove(ref.id());
+            this.clearOffline(ref);
+            this.unindexInvite(ref, party);
+            this.events.memberRemoved(party, ref);
+            if (party.getMembers().isEmpty()) {
+                this.disbandParty(party);
+            } else {
+                if (isOwner) {
+                    this.onPartyOwnerLeave(ref, party);
+                }
+                this.onPartyChanged(party);
             }
         }
     }
 
-    private void onPartyOwnerLeave(ServerPlayerEntity player, Party party) {
+    private void onPartyOwnerLeave(PlayerRef owner, Party party) {
         var members = party.getMembers();
 
         if (!members.isEmpty()) {
-            var nextMember = members.get(0);
+            var nextMember = members.iterator().next();
+            for (var member : members) {
+                if (!this.isAwaitingReconnect(member)) {
+                    nextMember = member;
+                    break;
+                }
+            }
             party.setOwner(nextMember);
-            nextMember.ifOnline(
-                this.server,
-                nextPlayer -> nextPlayer.sendMessage(PartyTexts.transferredReceiver(player).formatted(Formatting.GOLD))
-            );
+            this.inviteTexts.remove(party.getUuid());
+            this.eventLog.log(PartyEventLog.Category.TRANSFER, party, owner, nextMember);
+            this.events.ownerChanged(party, owner);
+
+            var nextPlayer = this.presence.getPlayer(nextMember.id());
+            if (nextPlayer != null) {
+                var ownerName = this.presence.getName(owner);
+                nextPlayer.sendMessage(PartyTexts.transferredReceiver(ownerName).formatted(Formatting.GOLD));
+            }
         }
     }
 
     @Nullable
     public Party getParty(PlayerRef player) {
-        return this.playerToParty.get(player);
+        return this.playerToParty.get(player.id());
     }
 
     @Nullable
     public Party getParty(UUID uuid) {
-        for (Party party : this.playerToParty.values()) {
-            if (party.getUuid().equals(uuid)) {
-                return party;
-            }
-        }
-
-        return null;
+        return this.parties.get(uuid);
     }
 
     @Nullable
     public Party getOwnParty(PlayerRef owner) {
-        var party = this.playerToParty.get(owner);
+        var party = this.playerToParty.get(owner.id());
         if (party != null && party.isOwner(owner)) {
             return party;
         }
         return null;
     }
 
+    /**
+     * @return the party owned by the player, created if the player is in no party here or on another node, or
+     * {@code null} if the player is a member of a party they do not own
+     */
     @Nullable
     Party getOrCreateOwnParty(PlayerRef owner) {
-        var party = this.playerToParty.computeIfAbsent(owner, this::createParty);
+        var party = this.playerToParty.get(owner.id());
+        if (party == null) {
+            if (this.isInRemoteParty(owner)) {
+                return null;
+            }
+            party = this.createParty(owner);
+            this.playerToParty.put(owner.id(), party);
+        }
         if (party.isOwner(owner)) {
             return party;
         }
@@ -275,27 +1308,466 @@ public final class PartyManager {
     }
 
     private Party createParty(PlayerRef owner) {
-        return new Party(this.server, owner);
+        var party = new Party(this.presence, owner, this.defaultCapacity);
+        this.parties.put(party.getUuid(), party);
+        this.sortedParties.put(party.getUuid(), party);
+        this.eventLog.log(PartyEventLog.Category.CREATE, party, owner, null);
+        this.onPartyChanged(party);
+        this.events.created(party);
+        return party;
     }
 
     private void disbandParty(Party party) {
+        this.removeParty(party, true);
+    }
+
+    /**
+     * Removes a party from this node. A party that lives on elsewhere in the federation is removed without being logged
+     * or reported to listeners as disbanded.
+     */
+    private void removeParty(Party party, boolean disband) {
+        this.parties.remove(party.getUuid(), party);
+        this.sortedParties.remove(party.getUuid(), party);
+        this.inviteTexts.remove(party.getUuid());
+        this.queue.remove(party);
+        this.sweeper.forget(party);
+        if (disband) {
+            this.eventLog.log(PartyEventLog.Category.DISBAND, party, party.getOwner(), null);
+        }
+        this.onPartyChanged(party);
+        if (disband) {
+            this.events.disbanded(party);
+        }
+
         for (PlayerRef member : party.getMembers()) {
-            this.playerToParty.remove(member, party);
+            this.playerToParty.remove(member.id(), party);
+            this.clearOffline(member);
+        }
+
+        var pendingMembers = party.getPendingMembers();
+        for (PlayerRef invitee : pendingMembers) {
+            this.unindexInvite(invitee, party);
+        }
+        pendingMembers.clear();
+    }
+
+    private void indexInvite(PlayerRef invitee, Party party) {
+        var parties = this.inviteeToParties.get(invitee);
+        if (parties == null) {
+            parties = new Reference2ObjectArrayMap<>(1);
+            this.inviteeToParties.put(invitee, parties);
+        }
+
+        TickTimerWheel.Timeout<Runnable> expiry = null;
+        if (this.inviteTtlTicks > 0) {
+            expiry = this.timers.schedule(this.inviteTtlTicks, () -> this.expireInvite(invitee, party));
+        }
+
+        var previous = parties.put(party, expiry);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void unindexInvite(PlayerRef invitee, Party party) {
+        var parties = this.inviteeToParties.get(invitee);
+        if (parties == null || !parties.containsKey(party)) {
+            return;
+        }
+
+        var expiry = parties.remove(party);
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        if (parties.isEmpty()) {
+            this.inviteeToParties.remove(invitee);
         }
     }
 
+    private void expireInvite(PlayerRef invitee, Party party) {
+        var parties = this.inviteeToParties.get(invitee);
+        if (parties == null || !parties.containsKey(party)) {
+            return;
+        }
+
+        // the invite was sent again while the timeout waited for its turn
+        var expiry = parties.get(party);
+        if (expiry != null && expiry.isPending()) {
+            return;
+        }
+
+        parties.remove(party);
+        if (parties.isEmpty()) {
+            this.inviteeToParties.remove(invitee);
+        }
+
+        if (party.cancelInvite(invitee)) {
+            this.eventLog.log(PartyEventLog.Category.INVITE_EXPIRED, party, party.getOwner(), invitee);
+            this.onPartyChanged(party);
+            this.events.inviteExpired(party, invitee);
+
+            var owner = this.presence.getPlayer(party.getOwner().id());
+            if (owner != null) {
+                var inviteeName = this.presence.getName(invitee);
+                owner.sendMessage(PartyTexts.inviteExpired(inviteeName).formatted(Formatting.GRAY));
+            }
+        }
+    }
+
+    /**
+     * @return the parties that have a pending invite for the given player, without scanning every party
+     */
+    public Set<Party> getInvitingParties(PlayerRef invitee) {
+        var parties = this.inviteeToParties.get(invitee);
+        return parties != null ? ReferenceSets.unmodifiable(parties.keySet()) : ReferenceSets.emptySet();
+    }
+
     public Collection<ServerPlayerEntity> getPartyMembers(ServerPlayerEntity player, boolean own) {
-        var ref = PlayerRef.of(player);
-        var party = own ? this.getOwnParty(ref) : this.getParty(ref);
+        var party = this.getPartyOf(player, own);
 
         if (party != null) {
-            return Lists.newArrayList(party.getMemberPlayers());
+            return Lists.newArrayList(party.getOnlineMembers());
         } else {
             return Collections.singleton(player);
         }
     }
 
+    /**
+     * Visits every online member of the given player's party, or only the player themselves if they have no party.
+     * Unlike {@link #getPartyMembers(ServerPlayerEntity, boolean)}, this does not build an intermediate collection:
+     * passing state through {@code context} lets callers use a non-capturing lambda.
+     *
+     * @param own whether to only consider the party if the player owns it
+     */
+    public <T> void forEachPartyMember(ServerPlayerEntity player, boolean own, T context, BiConsumer<T, ServerPlayerEntity> consumer) {
+        var party = this.getPartyOf(player, own);
+
+        if (party != null) {
+            party.forEachOnlineMember(context, consumer);
+        } else {
+            consumer.accept(context, player);
+        }
+    }
+
+    /**
+     * Groups the players of a lobby for team allocation. For games with a configured team count, parties are packed into
+     * that many balanced teams and each team is handed over as one group; otherwise every party is its own group.
+     */
+    private void allocateTeams(GameSpace gameSpace, Iterable<ServerPlayerEntity> players, Consumer<List<ServerPlayerEntity>> group) {
+        var groups = new ObjectArrayList<List<ServerPlayerEntity>>();
+        this.groupByParty(players, groups::add);
+        if (this.journal != null) {
+            var refs = new ObjectArrayList<PlayerRef>();
+            for (var player : players) {
+                refs.add(PlayerRef.of(player));
+            }
+            this.journal.lobbyFinalize(refs, groups.size());
+        }
+
+        var gameId = gameIdOf(gameSpace);
+        Integer teamCount = gameId != null ? this.teamBalancing.teamCounts().get(gameId) : null;
+        if (teamCount == null || teamCount <= 1) {
+            groups.forEach(group);
+            return;
+        }
+
+        var id = gameSpace.getMetadata().id();
+        long seed = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        for (var team : PartyTeamPacker.pack(groups, teamCount, seed, this.teamBalancing.maxSteps())) {
+            if (!team.isEmpty()) {
+                group.accept(team);
+            }
+        }
+    }
+
+    /**
+     * Splits the given players into one group per party in a single pass, keyed by party identity. Players without a
+     * party form a group of their own, and party members that are not among {@code players} are left out.
+     */
+    public void groupByParty(Iterable<ServerPlayerEntity> players, Consumer<List<ServerPlayerEntity>> group) {
+        groupByParty(players, player -> this.playerToParty.get(player.getUuid()), members -> {
+            var party = this.playerToParty.get(members.get(0).getUuid());
+            if (party != null) {
+                this.eventLog.log(PartyEventLog.Category.LOBBY, party.getUuid(), party.getOwner(), null, members.size());
+            }
+            group.accept(members);
+        });
+    }
+
+    static <P> void groupByParty(Iterable<P> players, Function<P, ?> partyOf, Consumer<List<P>> group) {
+        var groups = new Reference2ObjectLinkedOpenHashMap<Object, List<P>>();
+        for (P player : players) {
+            Object key = partyOf.apply(player);
+            if (key == null) {
+                key = player;
+            }
+
+            var members = groups.get(key);
+            if (members == null) {
+                members = new ObjectArrayList<>(4);
+                groups.put(key, members);
+            }
+            members.add(player);
+        }
+
+        for (var members : groups.values()) {
+            group.accept(members);
+        }
+    }
+
+    @Nullable
+    private Party getPartyOf(ServerPlayerEntity player, boolean own) {
+        var party = this.playerToParty.get(player.getUuid());
+        if (party != null && own && !party.isOwner(player.getUuid())) {
+            return null;
+        }
+        return party;
+    }
+
+    private void invalidateOnlineMembers(UUID player) {
+        var party = this.playerToParty.get(player);
+        if (party != null) {
+            party.invalidateOnlineMembers();
+        }
+    }
+
+    /**
+     * @return a live, unmodifiable view of every party, backed by the party registry
+     */
     public Collection<Party> getAllParties() {
-        return new HashSet<>(this.playerToParty.values());
+        return this.partiesView;
+    }
+
+    public int getPartyCount() {
+        return this.parties.size();
+    }
+
+    /**
+     * Lists the parties matching the filter in order of their UUIDs, visiting only as many parties as are needed to fill
+     * the page.
+     *
+     * @param after only list parties after this UUID, or {@code null} to start from the first party
+     * @param skip how many matching parties to skip before the page starts
+     * @param limit the most parties to return
+     */
+    public Page getParties(@Nullable UUID after, int skip, int limit, Predicate<Party> filter) {
+        var candidates = after != null ? this.sortedParties.tailMap(after).values() : this.sortedParties.values();
+        var parties = new ObjectArrayList<Party>(Math.min(limit, this.sortedParties.size()));
+
+        for (var party : candidates) {
+            if (party.getUuid().equals(after) || !filter.test(party)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+            } else if (parties.size() < limit) {
+                parties.add(party);
+            } else {
+                return new Page(parties, parties.get(parties.size() - 1).getUuid());
+            }
+        }
+
+        return new Page(parties, null);
+    }
+
+    /**
+     * Lists parties like {@link #getParties}, but visits them a chunk at a time under the tick budget of the work
+     * scheduler, so that a filter matching few parties never scans all of them in one tick. Parties disbanded while
+     * the listing is under way are left out.
+     *
+     * @param callback receives the page on the server thread once it is complete
+     */
+    public void scanParties(@Nullable UUID after, int skip, int limit, Predicate<Party> filter, Consumer<Page> callback) {
+        this.work.submit(new PartyScan(after, skip, limit, filter, callback));
+    }
+
+    /**
+     * @param next the UUID to list the next page after, or {@code null} if this is the last page
+     */
+    public record Page(List<Party> parties, @Nullable UUID next) {
+    }
+
+    /**
+     * @return the bus that every change to the parties on this server is dispatched to
+     */
+    public PartyEventBus getEvents() {
+        return this.events;
+    }
+
+    public PartyMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    PartyWorkScheduler.Stats getWorkStats() {
+        return this.work.stats();
+    }
+
+    /**
+     * Writes the current metrics in the Prometheus text format to the world save directory, off the server thread.
+     *
+     * @return the path that will be written
+     * @throws IllegalStateException if this manager is headless and so has no world to write to
+     */
+    public Path dumpMetrics() {
+        if (this.server == null) {
+            throw new IllegalStateException("Cannot dump metrics without a server");
+        }
+        var path = this.server.getSavePath(WorldSavePath.ROOT).resolve(METRICS_FILE);
+        var metrics = this.metrics.toPrometheus() + this.work.stats().toPrometheus();
+        Util.getIoWorkerExecutor().execute(() -> {
+            try {
+                Files.writeString(path, metrics);
+            } catch (IOException e) {
+                GameParties.LOGGER.warn("Failed to write party metrics to {}", path, e);
+            }
+        });
+        return path;
+    }
+
+    private final class FederationHost implements PartyFederation.Host {
+        @Override
+        @Nullable
+        public Party getParty(UUID uuid) {
+            return PartyManager.this.parties.get(uuid);
+        }
+
+        @Override
+        public boolean hostsOnlineMember(Party party) {
+            for (var member : party.getMembers()) {
+                if (PartyManager.this.presence.isOnline(member.id())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @Nullable
+        public Party adopt(PartyStorage.Entry entry) {
+            var party = PartyManager.this.restoreEntry(entry);
+            if (party != null) {
+                if (PartyManager.this.journal != null) {
+                    PartyManager.this.journal.restored(party);
+                }
+                PartyManager.this.onPartyChanged(party);
+            }
+            return party;
+        }
+
+        @Override
+        public void release(Party party) {
+            PartyManager.this.releaseParty(party.getUuid());
+        }
+
+        @Override
+        public void memberPresent(Party party, UUID player) {
+            PartyManager.this.clearOffline(new PlayerRef(player));
+        }
+
+        @Override
+        public void memberAbsent(Party party, UUID player) {
+            var manager = PartyManager.this;
+            if (!manager.isOnlineAnywhere(player) && !manager.offlineMembers.containsKey(player)) {
+                var ref = new PlayerRef(player);
+                manager.markOffline(ref, manager.presence.getName(ref));
+            }
+        }
+    }
+
+    /**
+     * Collects the invite texts of the parties that invited a player who just joined, then sends them all at once.
+     */
+    private final class InviteScan implements PartyWorkScheduler.Task {
+        private final PlayerRef player;
+        private final Party[] parties;
+        private final ObjectArrayList<Text> invites = new ObjectArrayList<>();
+        private int index;
+
+        InviteScan(PlayerRef player, Party[] parties) {
+            this.player = player;
+            this.parties = parties;
+        }
+
+        @Override
+        public boolean run() {
+            int end = Math.min(this.index + PartyManager.this.workChunkSize, this.parties.length);
+            for (; this.index < end; this.index++) {
+                var party = this.parties[this.index];
+                if (PartyManager.this.parties.get(party.getUuid()) != party || !party.getPendingMembers().contains(this.player)) {
+                    continue;
+                }
+
+                var owner = PartyManager.this.presence.getPlayer(party.getOwner().id());
+                if (owner != null) {
+                    this.invites.add(PartyManager.this.getInviteText(party, owner));
+                }
+            }
+
+            if (this.index < this.parties.length) {
+                return false;
+            }
+
+            var player = PartyManager.this.presence.getPlayer(this.player.id());
+            if (player != null && !this.invites.isEmpty()) {
+                player.sendMessage(PartyTexts.invitedReceiverAll(this.invites));
+            }
+            return true;
+        }
+    }
+
+    private final class PartyScan implements PartyWorkScheduler.Task {
+        private final Predicate<Party> filter;
+        private final int limit;
+        private final Consumer<Page> callback;
+        private final ObjectArrayList<Party> parties = new ObjectArrayList<>();
+        // the last party visited, which the next chunk continues after
+        @Nullable
+        private UUID cursor;
+        private int skip;
+
+        PartyScan(@Nullable UUID after, int skip, int limit, Predicate<Party> filter, Consumer<Page> callback) {
+            this.cursor = after;
+            this.skip = skip;
+            this.limit = limit;
+            this.filter = filter;
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean run() {
+            var sortedParties = PartyManager.this.sortedParties;
+            var candidates = this.cursor != null ? sortedParties.tailMap(this.cursor).values() : sortedParties.values();
+
+            int visited = 0;
+            for (var party : candidates) {
+                if (party.getUuid().equals(this.cursor)) {
+                    continue;
+                }
+                if (visited++ == PartyManager.this.workChunkSize) {
+                    return false;
+                }
+                this.cursor = party.getUuid();
+
+                if (!this.filter.test(party)) {
+                    continue;
+                }
+                if (this.skip > 0) {
+                    this.skip--;
+                } else if (this.parties.size() < this.limit) {
+                    this.parties.add(party);
+                } else {
+                    this.complete(this.parties.get(this.parties.size() - 1).getUuid());
+                    return true;
+                }
+            }
+
+            this.complete(null);
+            return true;
+        }
+
+        private void complete(@Nullable UUID next) {
+            this.parties.removeIf(party -> PartyManager.this.parties.get(party.getUuid()) != party);
+            this.callback.accept(new Page(this.parties, next));
+        }
     }
 }
@@ -0,0 +1,239 @@
+package xyz.nucleoid.parties;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts and times {@link PartyManager} operations per outcome: either success or one of the {@link PartyError} codes.
+ * Recording is cheap enough for the server thread, while reads may happen from any thread.
+ */
+public final class PartyMetrics {
+    private static final PartyError[] ERRORS = PartyError.values();
+    private static final int OUTCOMES = ERRORS.length + 1;
+
+    private final AtomicReferenceArray<Stat> stats = new AtomicReferenceArray<>(Operation.VALUES.length * OUTCOMES);
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void record(Operation operation, long start) {
+        this.record(operation, (PartyError) null, start);
+    }
+
+    public void record(Operation operation, PartyResult result, long start) {
+        this.record(operation, result.error(), start);
+    }
+
+    public void record(Operation operation, @Nullable PartyError error, long start) {
+        long nanos = System.nanoTime() - start;
+        this.getOrCreateStat(operation, error).record(nanos);
+    }
+
+    private Stat getOrCreateStat(Operation operation, @Nullable PartyError error) {
+        int index = index(operation, error);
+        var stat = this.stats.get(index);
+        if (stat == null) {
+            stat = new Stat(operation, error);
+            if (!this.stats.compareAndSet(index, null, stat)) {
+                stat = this.stats.get(index);
+            }
+        }
+        return stat;
+    }
+
+    private static int index(Operation operation, @Nullable PartyError error) {
+        return operation.ordinal() * OUTCOMES + (error != null ? error.ordinal() + 1 : 0);
+    }
+
+    /**
+     * Visits every operation and outcome that has been recorded at least once.
+     */
+    public void forEach(Consumer<Stat> consumer) {
+        for (int i = 0; i < this.stats.length(); i++) {
+            var stat = this.stats.get(i);
+            if (stat != null) {
+                consumer.accept(stat);
+            }
+        }
+    }
+
+    /**
+     * @return every recorded statistic in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        var counters = new StringBuilder()
+                .append("# TYPE game_parties_operations_total counter\n");
+        var latencies = new StringBuilder()
+                .append("# TYPE game_parties_operation_latency_seconds summary\n");
+
+        this.forEach(stat -> {
+            var labels = "operation=\"" + stat.operation().asString() + "\",outcome=\"" + stat.outcome() + "\"";
+            counters.append("game_parties_operations_total{").append(labels).append("} ").append(stat.count()).append('\n');
+
+            for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+                latencies.append("game_parties_operation_latency_seconds{").append(labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(stat.quantile(quantile))).append('\n');
+            }
+            latencies.append("game_parties_operation_latency_seconds_sum{").append(labels).append("} ")
+                    .append(seconds(stat.totalNanos())).append('\n');
+            latencies.append("game_parties_operation_latency_seconds_count{").append(labels).append("} ")
+                    .append(stat.count()).append('\n');
+        });
+
+        return counters.append(latencies).toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    public enum Operation {
+        INVITE,
+        ACCEPT,
+        KICK,
+        LEAVE,
+        TRANSFER,
+        DISBAND,
+        ADD,
+        REMOVE,
+        BULK_CREATE,
+        BULK_MOVE,
+        BULK_DISBAND,
+        QUEUE,
+        UNQUEUE,
+        QUEUE_ADMIT,
+        PLAYER_JOIN,
+        PLAYER_LOG_OUT,
+        COLLECT_PLAYERS_FOR_JOIN,
+        LOBBY_FINALIZE;
+
+        static final Operation[] VALUES = values();
+
+        private final String name = this.name().toLowerCase(Locale.ROOT);
+
+        public String asString() {
+            return this.name;
+        }
+    }
+
+    public static final class Stat {
+        private final Operation operation;
+        @Nullable
+        private final PartyError error;
+
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Stat(Operation operation, @Nullable PartyError error) {
+            this.operation = operation;
+            this.error = error;
+        }
+
+        private void record(long nanos) {
+            this.totalNanos.add(nanos);
+            this.histogram.record(nanos);
+        }
+
+        public Operation operation() {
+            return this.operation;
+        }
+
+        @Nullable
+        public PartyError error() {
+            return this.error;
+        }
+
+        public String outcome() {
+            return this.error != null ? this.error.name().toLowerCase(Locale.ROOT) : "ok";
+        }
+
+        public long count() {
+            return this.histogram.count();
+        }
+
+        public long totalNanos() {
+            return this.totalNanos.sum();
+        }
+
+        public long quantile(double quantile) {
+            return this.histogram.quantile(quantile);
+        }
+
+        public long maxNanos() {
+            return this.histogram.max();
+        }
+    }
+
+    /**
+     * A log-linear histogram in the style of HdrHistogram: every power of two is split into {@code 2^SUB_BITS}
+     * linear buckets, giving a bounded relative error of about 12% from nanoseconds up to minutes.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private volatile long max;
+
+        void record(long value) {
+            this.buckets.incrementAndGet(bucketOf(value));
+            this.count.increment();
+            if (value > this.max) {
+                this.max = value;
+            }
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) Math.max(value, 0);
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return Math.min((exponent - SUB_BITS + 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+
+        long count() {
+            return this.count.sum();
+        }
+
+        long max() {
+            return this.max;
+        }
+
+        long quantile(double quantile) {
+            long count = this.count();
+            if (count == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += this.buckets.get(bucket);
+                if (seen >= target) {
+                    return Math.min(upperBoundOf(bucket), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+}
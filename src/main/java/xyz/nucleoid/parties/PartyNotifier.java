@@ -0,0 +1,84 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects chat notifications for party members during a tick and sends them together when flushed. Events of the same
+ * kind for the same party are merged, so several members leaving in one tick become a single message, and each message
+ * is built once and then sent to every online member.
+ */
+final class PartyNotifier {
+    private final Reference2ObjectLinkedOpenHashMap<Party, Pending> pending = new Reference2ObjectLinkedOpenHashMap<>();
+
+    void notify(Party party, Kind kind, @Nullable Text subject) {
+        var pending = this.pending.get(party);
+        if (pending == null) {
+            pending = new Pending();
+            this.pending.put(party, pending);
+        }
+        pending.add(kind, subject);
+    }
+
+    void flush() {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        for (var entry : this.pending.reference2ObjectEntrySet()) {
+            var party = entry.getKey();
+            var subjects = entry.getValue().subjects;
+            for (var kind : Kind.VALUES) {
+                var kindSubjects = subjects[kind.ordinal()];
+                if (kindSubjects != null) {
+                    var message = kind.coalescable ? PartyTexts.coalesced(kind.key, kindSubjects) : kind.text;
+                    party.forEachOnlineMember(message, (text, player) -> player.sendMessage(text));
+                }
+            }
+        }
+
+        this.pending.clear();
+    }
+
+    enum Kind {
+        JOINED("text.game_parties.party.join.success", true),
+        ADDED("text.game_parties.party.add.success", true),
+        LEFT("text.game_parties.party.leave.success", true),
+        LEFT_GAME("text.game_parties.party.left_game", true),
+        KICKED("text.game_parties.party.kicked.sender", true),
+        REMOVED("text.game_parties.party.remove.success", true),
+        DISBANDED("text.game_parties.party.disband.success", false);
+
+        static final Kind[] VALUES = values();
+
+        final String key;
+        final boolean coalescable;
+        // the message of kinds without subjects never changes, so it is built once
+        @Nullable
+        final Text text;
+
+        Kind(String key, boolean coalescable) {
+            this.key = key;
+            this.coalescable = coalescable;
+            this.text = coalescable ? null : Text.translatable(key);
+        }
+    }
+
+    private static final class Pending {
+        @SuppressWarnings("unchecked")
+        final ObjectArrayList<Text>[] subjects = new ObjectArrayList[Kind.VALUES.length];
+
+        void add(Kind kind, @Nullable Text subject) {
+            var subjects = this.subjects[kind.ordinal()];
+            if (subjects == null) {
+                subjects = new ObjectArrayList<>(1);
+                this.subjects[kind.ordinal()] = subjects;
+            }
+            if (subject != null) {
+                subjects.add(subject);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package xyz.nucleoid.parties;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.UUID;
+
+/**
+ * Tells parties which of their members are online. On a server this is backed by the player list, while a headless
+ * {@link PartyManager}, as driven by the simulator, plugs in its own backend without any players behind it.
+ */
+interface PartyPresence {
+    /**
+     * @return the server whose players these are, or {@code null} when running headless
+     */
+    @Nullable
+    MinecraftServer getServer();
+
+    /**
+     * @return the online player with the given UUID, or {@code null} if they are offline or there are no player entities
+     */
+    @Nullable
+    ServerPlayerEntity getPlayer(UUID id);
+
+    /**
+     * @return whether the player with the given UUID is online on this server
+     */
+    default boolean isOnline(UUID id) {
+        return this.getPlayer(id) != null;
+    }
+
+    /**
+     * @return the name to show for the given player in messages, whether or not they are online
+     */
+    Text getName(PlayerRef player);
+
+    static PartyPresence of(MinecraftServer server) {
+        return new Server(server);
+    }
+
+    record Server(MinecraftServer server) implements PartyPresence {
+        @Override
+        public MinecraftServer getServer() {
+            return this.server;
+        }
+
+        @Override
+        @Nullable
+        public ServerPlayerEntity getPlayer(UUID id) {
+            return this.server.getPlayerManager().getPlayer(id);
+        }
+
+        @Override
+        public Text getName(PlayerRef player) {
+            return PartyTexts.name(player, this.server);
+        }
+    }
+}
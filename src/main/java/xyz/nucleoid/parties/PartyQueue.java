@@ -0,0 +1,197 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.game.GameSpace;
+import xyz.nucleoid.plasmid.api.game.GameSpaceManager;
+import xyz.nucleoid.plasmid.api.game.player.JoinIntent;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Queues whole parties for a game config and admits them into open game spaces of that config. Each admission pass
+ * packs the queued parties, largest first, into the game space with the least room that still fits them (best fit
+ * decreasing), and offers every member of a party to its game space in a single batch so that a party is either
+ * admitted together or not at all.
+ */
+final class PartyQueue {
+    private final int intervalTicks;
+    private final int defaultSpaceCapacity;
+    private final Map<Identifier, Integer> spaceCapacities;
+
+    // parties waiting for each game config, in the order they were queued
+    private final Object2ObjectMap<Identifier, ReferenceLinkedOpenHashSet<Party>> queues = new Object2ObjectOpenHashMap<>();
+    private final Reference2ObjectMap<Party, Identifier> queuedParties = new Reference2ObjectOpenHashMap<>();
+
+    private int ticksSinceAdmit;
+
+    PartyQueue(PartyConfig.Queue config) {
+        this.intervalTicks = config.intervalTicks();
+        this.defaultSpaceCapacity = config.defaultSpaceCapacity();
+        this.spaceCapacities = config.spaceCapacities();
+    }
+
+    /**
+     * @return whether the party was not already queued for the given game
+     */
+    boolean enqueue(Party party, Identifier gameId) {
+        var previous = this.queuedParties.put(party, gameId);
+        if (gameId.equals(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            this.removeFromQueue(party, previous);
+        }
+
+        this.queues.computeIfAbsent(gameId, id -> new ReferenceLinkedOpenHashSet<>()).add(party);
+        return true;
+    }
+
+    /**
+     * @return the game the party was queued for, or {@code null} if it was not queued
+     */
+    @Nullable
+    Identifier remove(Party party) {
+        var gameId = this.queuedParties.remove(party);
+        if (gameId != null) {
+            this.removeFromQueue(party, gameId);
+        }
+        return gameId;
+    }
+
+    @Nullable
+    Identifier getQueuedGame(Party party) {
+        return this.queuedParties.get(party);
+    }
+
+    int size() {
+        return this.queuedParties.size();
+    }
+
+    private void removeFromQueue(Party party, Identifier gameId) {
+        var queue = this.queues.get(gameId);
+        if (queue != null && queue.remove(party) && queue.isEmpty()) {
+            this.queues.remove(gameId);
+        }
+    }
+
+    /**
+     * Runs an admission pass every {@code intervalTicks} while any party is queued.
+     *
+     * @param admitted called for every party that has been admitted into a game space
+     */
+    void tick(Admitted admitted) {
+        if (this.queuedParties.isEmpty() || ++this.ticksSinceAdmit < this.intervalTicks) {
+            return;
+        }
+        this.ticksSinceAdmit = 0;
+
+        var gameSpaceManager = GameSpaceManager.get();
+        var spacesByGame = new Object2ObjectOpenHashMap<Identifier, ObjectArrayList<GameSpace>>(this.queues.size());
+        for (var gameSpace : gameSpaceManager.getOpenGameSpaces()) {
+            var gameId = PartyManager.gameIdOf(gameSpace);
+            if (gameId != null && this.queues.containsKey(gameId) && this.remaining(gameId, gameSpace) > 0) {
+                spacesByGame.computeIfAbsent(gameId, id -> new ObjectArrayList<>()).add(gameSpace);
+            }
+        }
+
+        for (var entry : spacesByGame.object2ObjectEntrySet()) {
+            this.admit(entry.getKey(), entry.getValue(), gameSpaceManager, admitted);
+        }
+    }
+
+    private int remaining(Identifier gameId, GameSpace gameSpace) {
+        int capacity = this.spaceCapacities.getOrDefault(gameId, this.defaultSpaceCapacity);
+        return capacity - gameSpace.getPlayers().size();
+    }
+
+    private void admit(Identifier gameId, List<GameSpace> spaces, GameSpaceManager gameSpaceManager, Admitted admitted) {
+        var queue = this.queues.get(gameId);
+
+        var candidates = new ObjectArrayList<Candidate>(queue.size());
+        for (var party : queue) {
+            var members = new ObjectArrayList<ServerPlayerEntity>();
+            for (var member : party.getOnlineMembers()) {
+                if (!gameSpaceManager.inGame(member)) {
+                    members.add(member);
+                }
+            }
+            if (!members.isEmpty()) {
+                candidates.add(new Candidate(party, members));
+            }
+        }
+
+        var remaining = new int[spaces.size()];
+        for (int i = 0; i < remaining.length; i++) {
+            remaining[i] = this.remaining(gameId, spaces.get(i));
+        }
+
+        bestFitDecreasing(candidates, candidate -> candidate.members.size(), remaining, (candidate, space) -> {
+            var result = spaces.get(space).getPlayers().offer(candidate.members, JoinIntent.PLAY);
+            if (!result.isOk()) {
+                return false;
+            }
+            this.remove(candidate.party);
+            admitted.accept(candidate.party, gameId);
+            return true;
+        });
+    }
+
+    /**
+     * Places the candidates, largest first and in their given order among candidates of the same size, into the space
+     * with the least room that still fits them. A space that refuses a candidate is treated as full from then on, for
+     * example because its game has started.
+     *
+     * @param candidates sorted in place
+     * @param remaining the room left in each space, which is updated as candidates are placed
+     */
+    static <C> void bestFitDecreasing(List<C> candidates, ToIntFunction<C> size, int[] remaining, Placement<C> placement) {
+        // the sort is stable, so candidates of the same size keep their order
+        candidates.sort(Comparator.comparingInt(size).reversed());
+
+        for (var candidate : candidates) {
+            int candidateSize = size.applyAsInt(candidate);
+            int best = -1;
+            for (int space = 0; space < remaining.length; space++) {
+                if (remaining[space] >= candidateSize && (best == -1 || remaining[space] < remaining[best])) {
+                    best = space;
+                }
+            }
+            if (best == -1) {
+                continue;
+            }
+
+            if (placement.place(candidate, best)) {
+                remaining[best] -= candidateSize;
+            } else {
+                remaining[best] = 0;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Placement<C> {
+        /**
+         * @return whether the space accepted the candidate
+         */
+        boolean place(C candidate, int space);
+    }
+
+    @FunctionalInterface
+    interface Admitted {
+        void accept(Party party, Identifier gameId);
+    }
+
+    private record Candidate(Party party, List<ServerPlayerEntity> members) {
+    }
+}
@@ -0,0 +1,154 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+/**
+ * Throttles invites, accepts and kicks with a token bucket per player, kept separately for the player sending the
+ * request and the player it is aimed at, so that neither one client spamming requests nor many clients ganging up on
+ * one player can eat into tick time.
+ * <p>
+ * Every bucket is a single {@code long} in a primitive map keyed by a 64-bit mix of both halves of the player's UUID,
+ * holding its tokens in the top 16 bits and the tick it was last refilled at in the rest. Buckets are only refilled when they
+ * are next used, and buckets that have filled up again are dropped every {@code evictIntervalTicks}, since a missing
+ * bucket counts as a full one.
+ */
+final class PartyRateLimiter {
+    private static final int TOKEN_SHIFT = 48;
+    private static final long TICK_MASK = (1L << TOKEN_SHIFT) - 1;
+    private static final long ABSENT = -1L;
+
+    private final PartyConfig.RateLimit.Bucket[] limits = new PartyConfig.RateLimit.Bucket[Action.VALUES.length];
+    private final Long2LongOpenHashMap[] senders = new Long2LongOpenHashMap[Action.VALUES.length];
+    private final Long2LongOpenHashMap[] targets = new Long2LongOpenHashMap[Action.VALUES.length];
+    private final int evictIntervalTicks;
+
+    private long tick;
+    private int ticksSinceEvict;
+
+    PartyRateLimiter(PartyConfig.RateLimit config) {
+        this.evictIntervalTicks = config.evictIntervalTicks();
+        for (var action : Action.VALUES) {
+            this.limits[action.ordinal()] = switch (action) {
+                case INVITE -> config.invite();
+                case ACCEPT -> config.accept();
+                case KICK -> config.kick();
+            };
+            this.senders[action.ordinal()] = createBuckets();
+            this.targets[action.ordinal()] = createBuckets();
+        }
+    }
+
+    private static Long2LongOpenHashMap createBuckets() {
+        var buckets = new Long2LongOpenHashMap();
+        buckets.defaultReturnValue(ABSENT);
+        return buckets;
+    }
+
+    /**
+     * Takes a token from the bucket of the sender and, if given, of the target. Nothing is taken unless both have one.
+     *
+     * @return whether the request may go ahead
+     */
+    boolean tryAcquire(Action action, PlayerRef sender, @Nullable PlayerRef target) {
+        var limit = this.limits[action.ordinal()];
+        var senders = this.senders[action.ordinal()];
+        var targets = this.targets[action.ordinal()];
+
+        long senderKey = key(sender);
+        long senderBucket = this.refill(senders.get(senderKey), limit);
+        if (tokens(senderBucket) == 0) {
+            return false;
+        }
+
+        if (target != null) {
+            long targetKey = key(target);
+            long targetBucket = this.refill(targets.get(targetKey), limit);
+            if (tokens(targetBucket) == 0) {
+                return false;
+            }
+            targets.put(targetKey, targetBucket - (1L << TOKEN_SHIFT));
+        }
+
+        senders.put(senderKey, senderBucket - (1L << TOKEN_SHIFT));
+        return true;
+    }
+
+    void tick() {
+        this.tick++;
+        if (++this.ticksSinceEvict >= this.evictIntervalTicks) {
+            this.ticksSinceEvict = 0;
+            for (var action : Action.VALUES) {
+                var limit = this.limits[action.ordinal()];
+                this.evictFull(this.senders[action.ordinal()], limit);
+                this.evictFull(this.targets[action.ordinal()], limit);
+            }
+        }
+    }
+
+    /**
+     * @return how many buckets are currently held, over every action
+     */
+    int size() {
+        int size = 0;
+        for (var action : Action.VALUES) {
+            size += this.senders[action.ordinal()].size() + this.targets[action.ordinal()].size();
+        }
+        return size;
+    }
+
+    private void evictFull(Long2LongOpenHashMap buckets, PartyConfig.RateLimit.Bucket limit) {
+        var iterator = buckets.long2LongEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            if (tokens(this.refill(iterator.next().getLongValue(), limit)) >= limit.burst()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the bucket with every token added that it has earned since it was last refilled
+     */
+    private long refill(long bucket, PartyConfig.RateLimit.Bucket limit) {
+        if (bucket == ABSENT) {
+            return pack(limit.burst(), this.tick);
+        }
+
+        int tokens = tokens(bucket);
+        long refilledAt = bucket & TICK_MASK;
+        long earned = (this.tick - refilledAt) / limit.refillTicks();
+        if (earned <= 0) {
+            return bucket;
+        }
+
+        if (tokens + earned >= limit.burst()) {
+            return pack(limit.burst(), this.tick);
+        }
+        // keep the ticks towards the next token
+        return pack(tokens + (int) earned, refilledAt + earned * limit.refillTicks());
+    }
+
+    private static long key(PlayerRef player) {
+        // xor-ing the halves directly would collide for any two players whose halves are swapped or share a difference
+        var id = player.id();
+        return HashCommon.murmurHash3(HashCommon.murmurHash3(id.getMostSignificantBits()) ^ id.getLeastSignificantBits());
+    }
+
+    private static long pack(int tokens, long tick) {
+        return (long) tokens << TOKEN_SHIFT | tick & TICK_MASK;
+    }
+
+    private static int tokens(long bucket) {
+        return (int) (bucket >>> TOKEN_SHIFT);
+    }
+
+    enum Action {
+        INVITE,
+        ACCEPT,
+        KICK;
+
+        static final Action[] VALUES = values();
+    }
+}
@@ -19,6 +19,10 @@ public final class PartyResult {
         return new PartyResult(null, error);
     }
 
+    public static PartyResult err(PartyError error, Party party) {
+        return new PartyResult(party, error);
+    }
+
     public boolean isOk() {
         return this.error == null;
     }
@@ -27,6 +31,9 @@ public final class PartyResult {
         return this.error != null;
     }
 
+    /**
+     * @return the affected party, or for errors, the party the error relates to if there is one
+     */
     @Nullable
     public Party party() {
         return this.party;
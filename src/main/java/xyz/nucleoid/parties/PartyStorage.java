@@ -0,0 +1,249 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores parties in a compact, versioned binary snapshot in the world save directory.
+ * <p>
+ * Snapshots are captured on the server thread and encoded and written by a single background thread, so writes never
+ * block a tick and always land in order. Loading reads the whole file into memory and decodes it in one pass; the file is
+ * not memory-mapped, since a mapping keeps the file locked on Windows and the next save could not replace it.
+ *
+ * <pre>
+ * int     magic
+ * varint  version
+ * varint  party count
+ * party:
+ *   uuid    party uuid
+ *   varint  owner index into members
+ *   varint  member count, followed by member uuids
+ *   varint  pending member count, followed by pending member uuids
+ *   varint  capacity (since version 2)
+ * </pre>
+ */
+final class PartyStorage implements AutoCloseable {
+    private static final String FILE_NAME = GameParties.ID + ".dat";
+    private static final int MAGIC = 0x47505459; // GPTY
+    static final int VERSION = 2;
+
+    private final Path path;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Game Parties Storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    PartyStorage(MinecraftServer server) {
+        this.path = server.getSavePath(WorldSavePath.ROOT).resolve(FILE_NAME);
+    }
+
+    List<Entry> load() {
+        if (!Files.exists(this.path)) {
+            return List.of();
+        }
+
+        try {
+            return decode(ByteBuffer.wrap(Files.readAllBytes(this.path)));
+        } catch (IOException | RuntimeException e) {
+            GameParties.LOGGER.error("Failed to load parties from {}", this.path, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Writes the given snapshot off the server thread. The entries must not be modified afterwards.
+     */
+    void saveAsync(List<Entry> entries) {
+        this.writer.execute(() -> this.write(entries));
+    }
+
+    void save(List<Entry> entries) {
+        this.writer.execute(() -> this.write(entries));
+        this.close();
+    }
+
+    private void write(List<Entry> entries) {
+        var tempPath = this.path.resolveSibling(FILE_NAME + ".tmp");
+        try (var channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = encode(entries);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            GameParties.LOGGER.error("Failed to save parties to {}", this.path, e);
+            return;
+        }
+
+        try {
+            try {
+                Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            GameParties.LOGGER.error("Failed to replace {}", this.path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.writer.shutdown();
+        try {
+            if (!this.writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                GameParties.LOGGER.warn("Timed out waiting for parties to be saved");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ByteBuffer encode(Collection<Entry> entries) {
+        int size = 4 + 5 + 5;
+        for (var entry : entries) {
+            size += maxEntrySize(entry);
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        putVarInt(buffer, VERSION);
+        putVarInt(buffer, entries.size());
+
+        for (var entry : entries) {
+            putEntry(buffer, entry);
+        }
+
+        return buffer.flip();
+    }
+
+    static List<Entry> decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a party snapshot");
+            }
+
+            int version = getVarInt(buffer);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported party snapshot version " + version);
+            }
+
+            int count = getVarInt(buffer);
+            var entries = new ObjectArrayList<Entry>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(getEntry(buffer, version));
+            }
+            return entries;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated party snapshot", e);
+        }
+    }
+
+    static int maxEntrySize(Entry entry) {
+        return 16 + 5 + 5 + 5 + 5 + (entry.members().length + entry.pendingMembers().length) * 16;
+    }
+
+    static void putEntry(ByteBuffer buffer, Entry entry) {
+        putUuid(buffer, entry.uuid());
+        putVarInt(buffer, entry.ownerIndex());
+        putUuids(buffer, entry.members());
+        putUuids(buffer, entry.pendingMembers());
+        putVarInt(buffer, entry.capacity());
+    }
+
+    static Entry getEntry(ByteBuffer buffer, int version) throws IOException {
+        var uuid = getUuid(buffer);
+        int ownerIndex = getVarInt(buffer);
+        var members = getUuids(buffer);
+        var pendingMembers = getUuids(buffer);
+        int capacity = version >= 2 ? getVarInt(buffer) : 0;
+        if (ownerIndex >= members.length) {
+            throw new IOException("Party " + uuid + " has no owner");
+        }
+        return new Entry(uuid, ownerIndex, members, pendingMembers, capacity);
+    }
+
+    private static void putUuids(ByteBuffer buffer, UUID[] uuids) {
+        putVarInt(buffer, uuids.length);
+        for (var uuid : uuids) {
+            putUuid(buffer, uuid);
+        }
+    }
+
+    private static UUID[] getUuids(ByteBuffer buffer) throws IOException {
+        int length = getVarInt(buffer);
+        if (length < 0 || length * 16L > buffer.remaining()) {
+            throw new IOException("Invalid member count " + length);
+        }
+
+        var uuids = new UUID[length];
+        for (int i = 0; i < length; i++) {
+            uuids[i] = getUuid(buffer);
+        }
+        return uuids;
+    }
+
+    static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    record Entry(UUID uuid, int ownerIndex, UUID[] members, UUID[] pendingMembers, int capacity) {
+        static Entry of(Party party) {
+            var memberIds = new UUID[party.getMembers().size()];
+            int ownerIndex = 0;
+            int i = 0;
+            for (var member : party.getMembers()) {
+                if (party.isOwner(member)) {
+                    ownerIndex = i;
+                }
+                memberIds[i++] = member.id();
+            }
+
+            var pendingIds = party.getPendingMembers().stream().map(PlayerRef::id).toArray(UUID[]::new);
+            return new Entry(party.getUuid(), ownerIndex, memberIds, pendingIds, party.getCapacity());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Walks over every party a few at a time, so that parties left behind can be cleaned up without ever scanning all of
+ * them in one tick. The walk follows the parties in UUID order from where the previous slice ended, so it stays valid
+ * while parties come and go, and starts over once it reaches the end.
+ * <p>
+ * It also keeps track of since when each party has been left with only its owner, so that such parties can be
+ * reclaimed once they have stayed that way for {@code soloTimeoutTicks}.
+ */
+final class PartySweeper {
+    private final int soloTimeoutTicks;
+    private final int partiesPerTick;
+
+    private final ObjectArrayList<Party> slice = new ObjectArrayList<>();
+    // the tick each party was first seen with only its owner, for as long as it stays that way
+    private final Reference2LongOpenHashMap<Party> soloSince = new Reference2LongOpenHashMap<>();
+    @Nullable
+    private UUID cursor;
+    private long tick;
+
+    PartySweeper(PartyConfig.Sweep config) {
+        this.soloTimeoutTicks = config.soloTimeoutTicks();
+        this.partiesPerTick = config.partiesPerTick();
+    }
+
+    /**
+     * @return the parties to check this tick, which stay valid until the next call
+     */
+    List<Party> nextSlice(Object2ObjectSortedMap<UUID, Party> parties) {
+        this.tick++;
+        this.slice.clear();
+
+        var cursor = this.cursor;
+        var iterator = (cursor != null ? parties.tailMap(cursor) : parties).values().iterator();
+        while (this.slice.size() < this.partiesPerTick && iterator.hasNext()) {
+            var party = iterator.next();
+            if (!party.getUuid().equals(cursor)) {
+                this.slice.add(party);
+            }
+        }
+
+        this.cursor = iterator.hasNext() && !this.slice.isEmpty() ? this.slice.get(this.slice.size() - 1).getUuid() : null;
+        return this.slice;
+    }
+
+    /**
+     * @param solo whether the party is down to its owner, with nothing else that keeps it in use
+     * @return whether the party has been solo for long enough to be reclaimed
+     */
+    boolean isAbandoned(Party party, boolean solo) {
+        if (!solo || this.soloTimeoutTicks <= 0) {
+            this.soloSince.removeLong(party);
+            return false;
+        }
+
+        if (!this.soloSince.containsKey(party)) {
+            this.soloSince.put(party, this.tick);
+            return false;
+        }
+        return this.tick - this.soloSince.getLong(party) >= this.soloTimeoutTicks;
+    }
+
+    void forget(Party party) {
+        this.soloSince.removeLong(party);
+    }
+}
@@ -0,0 +1,147 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Packs parties into a fixed number of teams of roughly equal size without splitting any party. Parties are first
+ * placed largest first onto the currently smallest team (longest processing time first), then moves and swaps between
+ * the largest and smallest team are applied while they narrow the gap, for at most a fixed number of steps. Parties of
+ * equal size are ordered by a seeded shuffle, so the same lobby, seed and step budget always give the same teams.
+ * <p>
+ * Every step lowers the sum of the squared team sizes, so refinement always ends by itself. The step budget is only a
+ * safety cap for huge lobbies, and is not reached by lobbies of a normal size.
+ */
+final class PartyTeamPacker {
+    private PartyTeamPacker() {
+    }
+
+    /**
+     * @param groups the players of each party, with players without a party in groups of their own
+     * @param maxSteps the most moves or swaps that may be applied to improve the initial placement, as a safety cap
+     * @return the players of each team
+     */
+    static <P> List<List<P>> pack(List<List<P>> groups, int teamCount, long seed, int maxSteps) {
+        var sorted = new ObjectArrayList<>(groups);
+        Collections.shuffle(sorted, new Random(seed));
+        sorted.sort(Comparator.comparingInt((List<P> group) -> group.size()).reversed());
+
+        int[] loads = new int[teamCount];
+        @SuppressWarnings("unchecked")
+        ObjectArrayList<List<P>>[] teams = new ObjectArrayList[teamCount];
+        for (int i = 0; i < teamCount; i++) {
+            teams[i] = new ObjectArrayList<>();
+        }
+
+        for (var group : sorted) {
+            int team = lightest(loads);
+            teams[team].add(group);
+            loads[team] += group.size();
+        }
+
+        // counted in steps rather than time, so that the result does not depend on the load of the machine
+        int steps = 0;
+        while (steps < maxSteps && refine(teams, loads)) {
+            steps++;
+        }
+
+        var result = new ObjectArrayList<List<P>>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            var players = new ObjectArrayList<P>(loads[i]);
+            for (var group : teams[i]) {
+                players.addAll(group);
+            }
+            result.add(players);
+        }
+        return result;
+    }
+
+    /**
+     * Applies the single move or swap between the largest and smallest team that narrows the gap between them the most.
+     *
+     * @return whether anything was changed
+     */
+    private static <P> boolean refine(ObjectArrayList<List<P>>[] teams, int[] loads) {
+        int heavy = heaviest(loads);
+        int light = lightest(loads);
+        int gap = loads[heavy] - loads[light];
+        if (gap <= 1) {
+            return false;
+        }
+
+        var heavyGroups = teams[heavy];
+        var lightGroups = teams[light];
+
+        int bestGap = gap;
+        int bestHeavy = -1;
+        int bestLight = -1;
+
+        for (int i = 0; i < heavyGroups.size(); i++) {
+            int size = heavyGroups.get(i).size();
+
+            // moving the group over
+            int movedGap = Math.abs(gap - 2 * size);
+            if (movedGap < bestGap) {
+                bestGap = movedGap;
+                bestHeavy = i;
+                bestLight = -1;
+            }
+
+            // swapping it with a smaller group
+            for (int j = 0; j < lightGroups.size(); j++) {
+                int delta = size - lightGroups.get(j).size();
+                if (delta > 0) {
+                    int swappedGap = Math.abs(gap - 2 * delta);
+                    if (swappedGap < bestGap) {
+                        bestGap = swappedGap;
+                        bestHeavy = i;
+                        bestLight = j;
+                    }
+                }
+            }
+        }
+
+        if (bestHeavy == -1) {
+            return false;
+        }
+
+        var moved = heavyGroups.get(bestHeavy);
+        if (bestLight == -1) {
+            heavyGroups.remove(bestHeavy);
+            lightGroups.add(moved);
+            loads[heavy] -= moved.size();
+            loads[light] += moved.size();
+        } else {
+            var swapped = lightGroups.set(bestLight, moved);
+            heavyGroups.set(bestHeavy, swapped);
+            int delta = moved.size() - swapped.size();
+            loads[heavy] -= delta;
+            loads[light] += delta;
+        }
+        return true;
+    }
+
+    private static int lightest(int[] loads) {
+        int team = 0;
+        for (int i = 1; i < loads.length; i++) {
+            if (loads[i] < loads[team]) {
+                team = i;
+            }
+        }
+        return team;
+    }
+
+    private static int heaviest(int[] loads) {
+        int team = 0;
+        for (int i = 1; i < loads.length; i++) {
+            if (loads[i] > loads[team]) {
+                team = i;
+            }
+        }
+        return team;
+    }
+}
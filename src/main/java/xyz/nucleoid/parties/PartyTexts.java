@@ -1,17 +1,30 @@
 package xyz.nucleoid.parties;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
+import net.minecraft.screen.ScreenTexts;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.text.Texts;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.plasmid.api.game.GameTexts;
 import xyz.nucleoid.plasmid.api.util.PlayerRef;
 
 public final class PartyTexts {
+    // messages without arguments are built once and handed out as shallow copies, so callers may still style them
+    private static final Text DISBAND_SUCCESS = Text.translatable("text.game_parties.party.disband.success");
+    private static final Text KICKED_RECEIVER = Text.translatable("text.game_parties.party.kicked.receiver").formatted(Formatting.RED);
+    private static final Text NO_PARTIES = Text.translatable("text.game_parties.party.list.none");
+    private static final Text LIST_MEMBER_TYPE_OWNER = Text.translatable("text.game_parties.party.list.member.type.owner").formatted(Formatting.LIGHT_PURPLE);
+    private static final Text LIST_MEMBER_TYPE_PENDING = Text.translatable("text.game_parties.party.list.member.type.pending").formatted(Formatting.GRAY);
+    private static final Text LIST_MEMBER_TYPE_OFFLINE = Text.translatable("text.game_parties.party.list.member.type.offline").formatted(Formatting.GRAY);
+
     public static MutableText displayError(PartyError error, ServerPlayerEntity player) {
         return displayError(error, player.getGameProfile().getName());
     }
@@ -20,6 +33,24 @@ public final class PartyTexts {
         return PartyError.errorText(error, playerName);
     }
 
+    public static MutableText displayError(PartyResult result, ServerPlayerEntity player) {
+        return displayError(result, player.getGameProfile().getName());
+    }
+
+    public static MutableText displayError(PartyResult result, String playerName) {
+        return PartyError.errorText(result.error(), playerName, result.party());
+    }
+
+    public static MutableText displayError(PartyBatchResult result, MinecraftServer server) {
+        var culprit = result.culprit();
+        var parties = result.parties();
+        return PartyError.errorText(
+                result.error(),
+                culprit != null ? profileName(culprit, server) : "",
+                parties.isEmpty() ? null : parties.get(0)
+        );
+    }
+
     public static MutableText joinSuccess(ServerPlayerEntity player) {
         return Text.translatable("text.game_parties.party.join.success", player.getDisplayName());
     }
@@ -29,7 +60,7 @@ public final class PartyTexts {
     }
 
     public static MutableText disbandSuccess() {
-        return Text.translatable("text.game_parties.party.disband.success");
+        return DISBAND_SUCCESS.copy();
     }
 
     public static MutableText addSuccess(ServerPlayerEntity player) {
@@ -45,7 +76,11 @@ public final class PartyTexts {
     }
 
     public static MutableText transferredReceiver(ServerPlayerEntity transferredFrom) {
-        return Text.translatable("text.game_parties.party.transferred.receiver", transferredFrom.getDisplayName());
+        return transferredReceiver(transferredFrom.getDisplayName());
+    }
+
+    public static MutableText transferredReceiver(Text transferredFrom) {
+        return Text.translatable("text.game_parties.party.transferred.receiver", transferredFrom);
     }
 
     public static MutableText kickedSender(ServerPlayerEntity player) {
@@ -53,7 +88,7 @@ public final class PartyTexts {
     }
 
     public static MutableText kickedReceiver() {
-        return Text.translatable("text.game_parties.party.kicked.receiver");
+        return KICKED_RECEIVER.copy();
     }
 
     public static MutableText invitedSender(ServerPlayerEntity player) {
@@ -73,12 +108,72 @@ public final class PartyTexts {
                 ));
     }
 
+    public static MutableText inviteExpired(Text invitee) {
+        return Text.translatable("text.game_parties.party.invite.expired", invitee);
+    }
+
     public static MutableText leftGame(ServerPlayerEntity player) {
-        return Text.translatable("text.game_parties.party.left_game", player.getDisplayName());
+        return leftGame(player.getDisplayName());
+    }
+
+    public static MutableText leftGame(Text name) {
+        return Text.translatable("text.game_parties.party.left_game", name);
+    }
+
+    /**
+     * @return the message for the given key about a single subject, or its {@code .multiple} variant listing every
+     * subject when there are several
+     */
+    public static MutableText coalesced(String key, List<? extends Text> subjects) {
+        if (subjects.size() == 1) {
+            return Text.translatable(key, subjects.get(0));
+        }
+        return Text.translatable(key + ".multiple", Texts.join(subjects, Text.literal(", ")));
+    }
+
+    public static MutableText invitedReceiverAll(List<? extends Text> invites) {
+        return invites.size() == 1 ? invites.get(0).copy() : Texts.join(invites, ScreenTexts.LINE_BREAK).copy();
+    }
+
+    public static MutableText queueJoined(Identifier gameId) {
+        return Text.translatable("text.game_parties.party.queue.joined", gameId.toString());
+    }
+
+    public static MutableText queueLeft(Identifier gameId) {
+        return Text.translatable("text.game_parties.party.queue.left", gameId.toString());
+    }
+
+    public static MutableText unknownGame(Identifier gameId) {
+        return Text.translatable("text.game_parties.party.queue.unknown_game", gameId.toString());
+    }
+
+    public static MutableText queueAdmitted(Identifier gameId) {
+        return Text.translatable("text.game_parties.party.queue.admitted", gameId.toString());
+    }
+
+    public static MutableText bulkCreated(int partyCount) {
+        return Text.translatable("text.game_parties.party.bulk.created", partyCount);
+    }
+
+    public static MutableText bulkMoved(int playerCount) {
+        return Text.translatable("text.game_parties.party.bulk.moved", playerCount);
+    }
+
+    public static MutableText bulkDisbanded(int partyCount) {
+        return Text.translatable("text.game_parties.party.bulk.disbanded", partyCount);
     }
 
     public static MutableText noParties() {
-        return Text.translatable("text.game_parties.party.list.none");
+        return NO_PARTIES.copy();
+    }
+
+    public static MutableText listFooter(int shown, @Nullable String nextCommand) {
+        var text = Text.translatable("text.game_parties.party.list.footer", shown);
+        if (nextCommand != null) {
+            text.append(ScreenTexts.SPACE).append(Text.translatable("text.game_parties.party.list.next")
+                    .setStyle(GameTexts.commandLinkStyle(nextCommand, Text.translatable("text.game_parties.party.list.next.hover"))));
+        }
+        return text.formatted(Formatting.GRAY);
     }
 
     public static MutableText listEntry(UUID uuid) {
@@ -94,14 +189,67 @@ public final class PartyTexts {
     }
 
     public static MutableText listMemberTypeOwner() {
-        return Text.translatable("text.game_parties.party.list.member.type.owner");
+        return LIST_MEMBER_TYPE_OWNER.copy();
     }
 
     public static MutableText listMemberTypePending() {
-        return Text.translatable("text.game_parties.party.list.member.type.pending");
+        return LIST_MEMBER_TYPE_PENDING.copy();
+    }
+
+    public static MutableText listMemberTypeOffline() {
+        return LIST_MEMBER_TYPE_OFFLINE.copy();
+    }
+
+    public static MutableText partyTooLargeForGame(int limit) {
+        return Text.translatable("text.game_parties.party.too_large_for_game", limit);
+    }
+
+    public static MutableText capacitySet(int capacity) {
+        return Text.translatable("text.game_parties.party.capacity.success", capacity);
+    }
+
+    public static MutableText statsHeader(int partyCount) {
+        return Text.translatable("text.game_parties.party.stats.header", partyCount);
+    }
+
+    public static MutableText statsEntry(PartyMetrics.Stat stat) {
+        return Text.translatable(
+                "text.game_parties.party.stats.entry",
+                stat.operation().asString(),
+                stat.outcome(),
+                stat.count(),
+                micros(stat.quantile(0.5)),
+                micros(stat.quantile(0.99)),
+                micros(stat.maxNanos())
+        );
+    }
+
+    static MutableText statsDeferred(PartyWorkScheduler.Stats stats) {
+        return Text.translatable(
+                "text.game_parties.party.stats.deferred",
+                stats.backlog(),
+                stats.completed(),
+                stats.chunks(),
+                stats.overBudgetTicks(),
+                stats.maxWaitTicks(),
+                micros(stats.maxTickNanos())
+        );
+    }
+
+    public static MutableText statsDumped(String path) {
+        return Text.translatable("text.game_parties.party.stats.dumped", path);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private static String profileName(PlayerRef ref, MinecraftServer server) {
+        var player = ref.getEntity(server);
+        return player != null ? player.getGameProfile().getName() : ref.id().toString();
     }
 
-    private static Text name(PlayerRef ref, MinecraftServer server) {
+    static Text name(PlayerRef ref, MinecraftServer server) {
         var player = ref.getEntity(server);
         if (player == null) {
             Text id = Text.literal(ref.id().toString());
@@ -0,0 +1,37 @@
+package xyz.nucleoid.parties;
+
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An immutable snapshot of a {@link Party}, published by the {@link PartyManager} after every change. Unlike
+ * {@link Party} itself, views may be read safely from any thread.
+ *
+ * @param members the members of the party, in the order they joined
+ */
+public record PartyView(UUID uuid, PlayerRef owner, List<PlayerRef> members, Set<PlayerRef> pendingMembers, int capacity) {
+    static PartyView of(Party party) {
+        return new PartyView(
+                party.getUuid(),
+                party.getOwner(),
+                List.copyOf(party.getMembers()),
+                Set.copyOf(party.getPendingMembers()),
+                party.getCapacity()
+        );
+    }
+
+    public boolean contains(PlayerRef player) {
+        return this.members.contains(player);
+    }
+
+    public boolean isOwner(PlayerRef player) {
+        return this.owner.equals(player);
+    }
+
+    public boolean isInvited(PlayerRef player) {
+        return this.pendingMembers.contains(player);
+    }
+}
@@ -0,0 +1,114 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+
+import java.util.Locale;
+
+/**
+ * Runs work that grows with the number of parties or players, such as listing every party or removing the members
+ * of a dropped proxy, in resumable chunks under a budget of nanoseconds per tick, so that no amount of party state can
+ * stall the server thread. Tasks take turns one chunk at a time, and at least one chunk runs every tick so that the
+ * backlog always drains.
+ */
+final class PartyWorkScheduler {
+    private final long budgetNanos;
+    private final ObjectArrayFIFOQueue<Pending> tasks = new ObjectArrayFIFOQueue<>();
+
+    private long tick;
+    private long completed;
+    private long chunks;
+    private long overBudgetTicks;
+    private long maxWaitTicks;
+    private long maxTickNanos;
+
+    PartyWorkScheduler(PartyConfig.Scheduler config) {
+        this.budgetNanos = config.budgetNanos();
+    }
+
+    void submit(Task task) {
+        this.tasks.enqueue(new Pending(task, this.tick));
+    }
+
+    void tick() {
+        this.tick++;
+        if (this.tasks.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            var pending = this.tasks.dequeue();
+            this.chunks++;
+            if (pending.task.run()) {
+                this.completed++;
+                this.maxWaitTicks = Math.max(this.maxWaitTicks, this.tick - pending.submittedTick);
+            } else {
+                this.tasks.enqueue(pending);
+            }
+            elapsed = System.nanoTime() - start;
+        } while (!this.tasks.isEmpty() && (this.budgetNanos == 0 || elapsed < this.budgetNanos));
+
+        if (!this.tasks.isEmpty()) {
+            this.overBudgetTicks++;
+        }
+        this.maxTickNanos = Math.max(this.maxTickNanos, elapsed);
+    }
+
+    /**
+     * Runs every task to completion, ignoring the budget.
+     */
+    void drain() {
+        while (!this.tasks.isEmpty()) {
+            var pending = this.tasks.dequeue();
+            if (!pending.task.run()) {
+                this.tasks.enqueue(pending);
+            }
+        }
+    }
+
+    Stats stats() {
+        return new Stats(this.tasks.size(), this.completed, this.chunks, this.overBudgetTicks, this.maxWaitTicks, this.maxTickNanos);
+    }
+
+    @FunctionalInterface
+    interface Task {
+        /**
+         * Runs the next chunk of this task, which should take no more than a small slice of the budget.
+         *
+         * @return whether the task is done
+         */
+        boolean run();
+    }
+
+    private record Pending(Task task, long submittedTick) {
+    }
+
+    /**
+     * @param backlog how many tasks are waiting to run
+     * @param completed how many tasks have finished
+     * @param chunks how many chunks have run
+     * @param overBudgetTicks how many ticks ran out of budget before the backlog was empty
+     * @param maxWaitTicks the most ticks any task took from being submitted to being finished
+     * @param maxTickNanos the most time spent running tasks in one tick
+     */
+    record Stats(int backlog, long completed, long chunks, long overBudgetTicks, long maxWaitTicks, long maxTickNanos) {
+        /**
+         * @return these statistics in the Prometheus text exposition format
+         */
+        String toPrometheus() {
+            return "# TYPE game_parties_deferred_backlog gauge\n"
+                    + "game_parties_deferred_backlog " + this.backlog + '\n'
+                    + "# TYPE game_parties_deferred_tasks_total counter\n"
+                    + "game_parties_deferred_tasks_total " + this.completed + '\n'
+                    + "# TYPE game_parties_deferred_chunks_total counter\n"
+                    + "game_parties_deferred_chunks_total " + this.chunks + '\n'
+                    + "# TYPE game_parties_deferred_over_budget_ticks_total counter\n"
+                    + "game_parties_deferred_over_budget_ticks_total " + this.overBudgetTicks + '\n'
+                    + "# TYPE game_parties_deferred_max_wait_ticks gauge\n"
+                    + "game_parties_deferred_max_wait_ticks " + this.maxWaitTicks + '\n'
+                    + "# TYPE game_parties_deferred_max_tick_seconds gauge\n"
+                    + "game_parties_deferred_max_tick_seconds " + String.format(Locale.ROOT, "%.9f", this.maxTickNanos / 1e9) + '\n';
+        }
+    }
+}
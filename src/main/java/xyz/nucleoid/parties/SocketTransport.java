@@ -0,0 +1,244 @@
+package xyz.nucleoid.parties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Sends messages over TCP as length-prefixed frames. Every node listens on its bind address for the other nodes and
+ * opens one outgoing connection to each peer. Each peer has its own sending thread, so a slow peer never blocks the
+ * server thread or the other peers.
+ * <p>
+ * Messages wait for their peer in a bounded queue. A message replaces a queued one with the same key, and once the
+ * queue is full the oldest message is dropped; the next resync repairs whatever was lost. A peer that cannot be
+ * reached is retried with a growing backoff rather than for every message.
+ */
+final class SocketTransport implements FederationTransport {
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int MAX_QUEUED_MESSAGES = 4096;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final InetSocketAddress bindAddress;
+    private final List<Peer> peers;
+
+    private ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    SocketTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) {
+        this.bindAddress = bindAddress;
+        this.peers = peers.stream().map(Peer::new).toList();
+    }
+
+    static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator == -1) {
+            throw new IllegalArgumentException("Expected host:port, got " + address);
+        }
+        return new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+    }
+
+    @Override
+    public void start(Consumer<ByteBuffer> receiver) {
+        for (var peer : this.peers) {
+            peer.thread.start();
+        }
+
+        try {
+            this.serverSocket = new ServerSocket();
+            this.serverSocket.bind(this.bindAddress);
+        } catch (IOException e) {
+            GameParties.LOGGER.error("Failed to listen for party federation on {}", this.bindAddress, e);
+            return;
+        }
+
+        var acceptThread = new Thread(() -> this.accept(receiver), "Game Parties Federation Listener");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    private void accept(Consumer<ByteBuffer> receiver) {
+        while (this.running) {
+            try {
+                var socket = this.serverSocket.accept();
+                var readThread = new Thread(() -> this.read(socket, receiver), "Game Parties Federation Reader");
+                readThread.setDaemon(true);
+                readThread.start();
+            } catch (IOException e) {
+                if (this.running) {
+                    GameParties.LOGGER.warn("Failed to accept party federation connection", e);
+                }
+            }
+        }
+    }
+
+    private void read(Socket socket, Consumer<ByteBuffer> receiver) {
+        try (socket; var input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (this.running) {
+                int length = input.readInt();
+                if (length < 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                var bytes = new byte[length];
+                input.readFully(bytes);
+                receiver.accept(ByteBuffer.wrap(bytes));
+            }
+        } catch (EOFException e) {
+            // the peer closed the connection
+        } catch (IOException e) {
+            if (this.running) {
+                GameParties.LOGGER.warn("Lost party federation connection from {}", socket.getRemoteSocketAddress(), e);
+            }
+        }
+    }
+
+    @Override
+    public void broadcast(ByteBuffer message) {
+        // a key of its own, so that nothing ever replaces it
+        this.enqueue(message, new Object());
+    }
+
+    @Override
+    public void broadcast(ByteBuffer message, UUID key) {
+        this.enqueue(message, key);
+    }
+
+    private void enqueue(ByteBuffer message, Object key) {
+        var bytes = new byte[message.remaining()];
+        message.duplicate().get(bytes);
+        for (var peer : this.peers) {
+            peer.enqueue(key, bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        if (this.serverSocket != null) {
+            closeQuietly(this.serverSocket);
+        }
+        for (var peer : this.peers) {
+            peer.thread.interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // nothing left to do with it
+        }
+    }
+
+    private final class Peer implements Runnable {
+        final InetSocketAddress address;
+        final Thread thread;
+
+        // guarded by this peer, in the order the messages were first queued
+        private final Map<Object, byte[]> queue = new LinkedHashMap<>();
+        private int dropped;
+
+        // only accessed from the thread of this peer
+        private Socket socket;
+        private long backoffMillis;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+            this.thread = new Thread(this, "Game Parties Federation Sender " + address);
+            this.thread.setDaemon(true);
+        }
+
+        synchronized void enqueue(Object key, byte[] bytes) {
+            if (this.queue.size() >= MAX_QUEUED_MESSAGES && !this.queue.containsKey(key)) {
+                var oldest = this.queue.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                this.dropped++;
+            }
+            this.queue.put(key, bytes);
+            this.notify();
+        }
+
+        private synchronized Map.Entry<Object, byte[]> peek() throws InterruptedException {
+            while (this.queue.isEmpty()) {
+                this.wait();
+            }
+            return this.queue.entrySet().iterator().next();
+        }
+
+        /**
+         * @return how many messages were dropped since the last call
+         */
+        private synchronized int sent(Object key, byte[] bytes) {
+            // unless a newer message has replaced it in the meantime
+            this.queue.remove(key, bytes);
+            int dropped = this.dropped;
+            this.dropped = 0;
+            return dropped;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (SocketTransport.this.running) {
+                    var message = this.peek();
+                    var key = message.getKey();
+                    var bytes = message.getValue();
+                    if (this.send(bytes)) {
+                        int dropped = this.sent(key, bytes);
+                        if (dropped > 0) {
+                            GameParties.LOGGER.warn("Dropped {} party federation messages that {} could not take in time", dropped, this.address);
+                        }
+                        this.backoffMillis = 0;
+                    } else {
+                        this.backoffMillis = Math.min(Math.max(this.backoffMillis * 2, MIN_BACKOFF_MILLIS), MAX_BACKOFF_MILLIS);
+                        Thread.sleep(this.backoffMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the transport was closed
+            } finally {
+                if (this.socket != null) {
+                    closeQuietly(this.socket);
+                }
+            }
+        }
+
+        private boolean send(byte[] bytes) {
+            try {
+                if (this.socket == null) {
+                    var socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(this.address, CONNECT_TIMEOUT_MILLIS);
+                    this.socket = socket;
+                }
+
+                var output = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream(), bytes.length + 4));
+                output.writeInt(bytes.length);
+                output.write(bytes);
+                output.flush();
+                return true;
+            } catch (IOException e) {
+                GameParties.LOGGER.debug("Failed to send party federation message to {}", this.address, e);
+                if (this.socket != null) {
+                    closeQuietly(this.socket);
+                    this.socket = null;
+                }
+                return false;
+            }
+        }
+    }
+}
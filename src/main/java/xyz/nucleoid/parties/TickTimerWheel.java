@@ -0,0 +1,133 @@
+package xyz.nucleoid.parties;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel driven by server ticks. Scheduling and cancelling are O(1), and each tick only visits the
+ * timeouts in the current slot, so thousands of pending timeouts cost next to nothing per tick.
+ *
+ * @param <T> the payload handed back when a timeout fires
+ */
+final class TickTimerWheel<T> {
+    private final Timeout<T>[] slots;
+    private final int mask;
+    private long tick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TickTimerWheel(int slotCount) {
+        int slots = Integer.highestOneBit(Math.max(slotCount - 1, 1)) << 1;
+        this.slots = new Timeout[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * @param delay the number of ticks from now after which the timeout fires, at least one
+     */
+    Timeout<T> schedule(long delay, T payload) {
+        long deadline = this.tick + Math.max(delay, 1);
+        var timeout = new Timeout<>(this, payload, deadline);
+
+        int slot = (int) (deadline & this.mask);
+        var head = this.slots[slot];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        this.slots[slot] = timeout;
+        this.size++;
+
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel by one tick and fires every timeout that is due.
+     */
+    void tick(Consumer<T> fire) {
+        long tick = ++this.tick;
+        int slot = (int) (tick & this.mask);
+
+        var timeout = this.slots[slot];
+        while (timeout != null) {
+            var next = timeout.next;
+            if (timeout.deadline <= tick) {
+                this.unlink(timeout, slot);
+                fire.accept(timeout.payload);
+
+                // firing may have cancelled the next timeout, in which case we start over from the head of the slot
+                if (next != null && !next.isPending()) {
+                    next = this.slots[slot];
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    long currentTick() {
+        return this.tick;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void unlink(Timeout<T> timeout, int slot) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            this.slots[slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.wheel = null;
+        this.size--;
+    }
+
+    static final class Timeout<T> {
+        @Nullable
+        private TickTimerWheel<T> wheel;
+        private final T payload;
+        private final long deadline;
+
+        @Nullable
+        private Timeout<T> previous;
+        @Nullable
+        private Timeout<T> next;
+
+        private Timeout(TickTimerWheel<T> wheel, T payload, long deadline) {
+            this.wheel = wheel;
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        T payload() {
+            return this.payload;
+        }
+
+        long deadline() {
+            return this.deadline;
+        }
+
+        boolean isPending() {
+            return this.wheel != null;
+        }
+
+        /**
+         * @return whether the timeout was still pending
+         */
+        boolean cancel() {
+            var wheel = this.wheel;
+            if (wheel == null) {
+                return false;
+            }
+            wheel.unlink(this, (int) (this.deadline & wheel.mask));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * An open-addressing hash map keyed by player UUIDs, stored as their two {@code long} halves in flat arrays. Unlike a
+ * map of {@link UUID} objects, a key costs 16 bytes and no object of its own, and looking up a UUID never dereferences
+ * a stored key. Values may not be {@code null}, as a {@code null} value marks an empty slot.
+ */
+final class UuidMap<V> {
+    private static final float LOAD_FACTOR = 0.75F;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private V[] values;
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    UuidMap() {
+        this(16);
+    }
+
+    UuidMap(int expected) {
+        this.allocate(HashCommon.arraySize(Math.max(expected, 2), LOAD_FACTOR));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.mostBits = new long[capacity];
+        this.leastBits = new long[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+        this.maxFill = HashCommon.maxFill(capacity, LOAD_FACTOR);
+    }
+
+    private static int hash(long most, long least) {
+        return (int) HashCommon.mix(most ^ least);
+    }
+
+    private int find(long most, long least) {
+        int slot = hash(most, least) & this.mask;
+        while (this.values[slot] != null) {
+            if (this.mostBits[slot] == most && this.leastBits[slot] == least) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -(slot + 1);
+    }
+
+    @Nullable
+    V get(UUID key) {
+        return this.get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    @Nullable
+    V get(long most, long least) {
+        int slot = this.find(most, least);
+        return slot >= 0 ? this.values[slot] : null;
+    }
+
+    boolean containsKey(UUID key) {
+        return this.find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+    }
+
+    @Nullable
+    V put(UUID key, V value) {
+        return this.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    @Nullable
+    V put(long most, long least, V value) {
+        int slot = this.find(most, least);
+        if (slot >= 0) {
+            var previous = this.values[slot];
+            this.values[slot] = value;
+            return previous;
+        }
+
+        this.insert(-slot - 1, most, least, value);
+        return null;
+    }
+
+    @Nullable
+    V putIfAbsent(UUID key, V value) {
+        long most = key.getMostSignificantBits();
+        long least = key.getLeastSignificantBits();
+        int slot = this.find(most, least);
+        if (slot >= 0) {
+            return this.values[slot];
+        }
+
+        this.insert(-slot - 1, most, least, value);
+        return null;
+    }
+
+    private void insert(int slot, long most, long least, V value) {
+        this.mostBits[slot] = most;
+        this.leastBits[slot] = least;
+        this.values[slot] = value;
+        if (++this.size > this.maxFill) {
+            this.rehash(HashCommon.arraySize(this.size + 1, LOAD_FACTOR));
+        }
+    }
+
+    @Nullable
+    V remove(UUID key) {
+        int slot = this.find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        var previous = this.values[slot];
+        this.removeSlot(slot);
+        return previous;
+    }
+
+    /**
+     * Removes the key only if it is mapped to the given value, compared by identity.
+     */
+    boolean remove(UUID key, V value) {
+        int slot = this.find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0 || this.values[slot] != value) {
+            return false;
+        }
+        this.removeSlot(slot);
+        return true;
+    }
+
+    private void removeSlot(int slot) {
+        this.size--;
+
+        // shift back the entries that probed past the removed slot, so that no lookup stops early at the gap
+        int last = slot;
+        slot = (slot + 1) & this.mask;
+        while (this.values[slot] != null) {
+            int home = hash(this.mostBits[slot], this.leastBits[slot]) & this.mask;
+            if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                this.mostBits[last] = this.mostBits[slot];
+                this.leastBits[last] = this.leastBits[slot];
+                this.values[last] = this.values[slot];
+                last = slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.values[last] = null;
+    }
+
+    private void rehash(int capacity) {
+        var mostBits = this.mostBits;
+        var leastBits = this.leastBits;
+        var values = this.values;
+        this.allocate(capacity);
+
+        for (int i = 0; i < values.length; i++) {
+            var value = values[i];
+            if (value != null) {
+                int slot = hash(mostBits[i], leastBits[i]) & this.mask;
+                while (this.values[slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.mostBits[slot] = mostBits[i];
+                this.leastBits[slot] = leastBits[i];
+                this.values[slot] = value;
+            }
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+}
@@ -0,0 +1,240 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two headless nodes joined by a {@link LoopbackTransport} and moves the members of a party between them.
+ */
+final class PartyFederationTest {
+    private static final int GRACE_TICKS = 5;
+    private static final int RESYNC_TICKS = 20;
+
+    private final LoopbackTransport.Hub hub = new LoopbackTransport.Hub();
+    private Node a = new Node("a", 1);
+    private final Node b = new Node("b", 1);
+
+    private final PlayerRef owner = new PlayerRef(new UUID(0, 1));
+    private final PlayerRef member = new PlayerRef(new UUID(0, 2));
+
+    @AfterEach
+    void close() {
+        this.a.manager.close();
+        this.b.manager.close();
+    }
+
+    @Test
+    void keepsPartyWhileMembersArePlayingOnTheOwner() {
+        var party = this.createParty();
+
+        this.move(this.member, this.a, this.b);
+        this.tick(GRACE_TICKS * 2);
+
+        assertSame(party, this.a.manager.getParty(party.getUuid()));
+        assertTrue(party.contains(this.owner));
+        assertTrue(party.contains(this.member));
+        assertFalse(this.a.manager.isAwaitingReconnect(this.member));
+        assertNull(this.b.manager.getParty(party.getUuid()));
+        assertNull(this.b.manager.getParty(this.member));
+    }
+
+    @Test
+    void handsPartyOverOnceNoMemberIsLeftOnTheOwner() {
+        var party = this.createParty();
+
+        this.move(this.member, this.a, this.b);
+        this.tick(2);
+        this.move(this.owner, this.a, this.b);
+        this.tick(2);
+
+        assertNull(this.a.manager.getParty(party.getUuid()));
+        assertNull(this.a.manager.getParty(this.owner));
+
+        var adopted = this.b.manager.getParty(party.getUuid());
+        assertNotNull(adopted);
+        assertEquals(this.owner, adopted.getOwner());
+        assertTrue(adopted.contains(this.member));
+
+        // both members are online on the new owner, so neither of them is waiting to reconnect
+        this.tick(GRACE_TICKS * 2);
+        assertTrue(adopted.contains(this.owner));
+        assertTrue(adopted.contains(this.member));
+        assertFalse(this.b.manager.isAwaitingReconnect(this.owner));
+    }
+
+    @Test
+    void removesMemberThatLeavesTheOtherNode() {
+        var party = this.createParty();
+
+        this.move(this.member, this.a, this.b);
+        this.tick(2);
+        this.b.logout(this.member);
+        this.tick(GRACE_TICKS * 2);
+
+        assertSame(party, this.a.manager.getParty(party.getUuid()));
+        assertTrue(party.contains(this.owner));
+        assertFalse(party.contains(this.member));
+    }
+
+    @Test
+    void refusesPartiesForMembersOfARemoteParty() {
+        this.createParty();
+        this.move(this.member, this.a, this.b);
+        this.tick(2);
+
+        var other = new PlayerRef(new UUID(0, 3));
+        this.b.login(other);
+        assertTrue(this.b.manager.invitePlayer(other, this.member).isOk());
+
+        var accept = this.b.manager.acceptInvite(this.member, this.b.manager.getParty(other));
+        assertEquals(PartyError.ALREADY_IN_A_PARTY, accept.error());
+        assertFalse(this.b.manager.getParty(other).contains(this.member));
+
+        var invite = this.b.manager.invitePlayer(this.member, other);
+        assertEquals(PartyError.ALREADY_IN_A_PARTY, invite.error());
+        assertNull(this.b.manager.getParty(this.member));
+
+        var create = this.b.manager.createParties(List.of(List.of(this.member)));
+        assertEquals(PartyError.ALREADY_IN_A_PARTY, create.error());
+    }
+
+    @Test
+    void forgetsPartiesOfAnEarlierRunOfARestartedNode() {
+        var party = this.createParty();
+        // give the party a version that a restarted node would not reach again with its first change
+        for (int i = 0; i < 3; i++) {
+            this.a.manager.setCapacity(party, party.getCapacity() + 1);
+            this.tick(1);
+        }
+        assertTrue(this.b.manager.isInRemoteParty(this.member));
+
+        this.a.manager.close();
+        this.a = new Node("a", 2);
+        // the restarted node restores the party from an older save, without the member
+        var saved = new PartyStorage.Entry(party.getUuid(), 0, new UUID[] { this.owner.id() }, new UUID[0], 0);
+        this.a.manager.restoreParty(saved);
+        this.tick(1);
+
+        assertTrue(this.b.manager.isInRemoteParty(this.owner));
+        assertFalse(this.b.manager.isInRemoteParty(this.member));
+
+        // a change still in flight from the earlier run is ignored, however high its version
+        var stale = PartyDelta.upsert("a", 1, Long.MAX_VALUE / 2, PartyStorage.Entry.of(party));
+        new LoopbackTransport(this.hub).broadcast(stale.encode());
+        this.tick(1);
+        assertFalse(this.b.manager.isInRemoteParty(this.member));
+    }
+
+    @Test
+    void dropsPartiesOfASilentNode() {
+        this.createParty();
+        assertTrue(this.b.manager.isInRemoteParty(this.owner));
+
+        this.a.manager.close();
+        for (int i = 0; i < 4 * RESYNC_TICKS; i++) {
+            this.b.manager.tick();
+        }
+
+        assertFalse(this.b.manager.isInRemoteParty(this.owner));
+        assertFalse(this.b.manager.isInRemoteParty(this.member));
+    }
+
+    private Party createParty() {
+        this.a.login(this.owner);
+        this.a.login(this.member);
+
+        var result = this.a.manager.createParties(List.of(List.of(this.owner, this.member)));
+        assertTrue(result.isOk());
+
+        // let the other node learn about the party
+        this.tick(1);
+        return this.a.manager.getParty(this.owner);
+    }
+
+    private void move(PlayerRef player, Node from, Node to) {
+        from.logout(player);
+        to.login(player);
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            this.a.manager.tick();
+            this.b.manager.tick();
+        }
+    }
+
+    private final class Node implements PartyPresence {
+        final PartyManager manager;
+        final Set<UUID> online = new ObjectOpenHashSet<>();
+
+        Node(String id, long epoch) {
+            var config = new PartyConfig(
+                    GRACE_TICKS,
+                    PartyConfig.DEFAULT.inviteTtlTicks(),
+                    PartyConfig.DEFAULT.defaultCapacity(),
+                    Map.of(),
+                    PartyConfig.DEFAULT.listPageSize(),
+                    new PartyConfig.EventLog(false, 1, Map.of()),
+                    new PartyConfig.Persistence(false, PartyConfig.DEFAULT.persistence().saveIntervalTicks()),
+                    PartyConfig.DEFAULT.queue(),
+                    PartyConfig.DEFAULT.teamBalancing(),
+                    new PartyConfig.Federation(false, id, "", List.of(), RESYNC_TICKS),
+                    PartyConfig.DEFAULT.journal(),
+                    PartyConfig.DEFAULT.rateLimit(),
+                    PartyConfig.DEFAULT.sweep(),
+                    new PartyConfig.Scheduler(0, PartyConfig.DEFAULT.scheduler().chunkSize())
+            );
+            this.manager = PartyManager.headless(this, config, new LoopbackTransport(PartyFederationTest.this.hub), id, epoch);
+        }
+
+        void login(PlayerRef player) {
+            this.online.add(player.id());
+            this.manager.onPlayerJoin(player, null);
+        }
+
+        void logout(PlayerRef player) {
+            this.online.remove(player.id());
+            this.manager.onPlayerLogOut(player, Text.literal(player.id().toString()));
+        }
+
+        @Override
+        @Nullable
+        public MinecraftServer getServer() {
+            return null;
+        }
+
+        @Override
+        @Nullable
+        public ServerPlayerEntity getPlayer(UUID id) {
+            return null;
+        }
+
+        @Override
+        public boolean isOnline(UUID id) {
+            return this.online.contains(id);
+        }
+
+        @Override
+        public Text getName(PlayerRef player) {
+            return Text.literal(player.id().toString());
+        }
+    }
+}
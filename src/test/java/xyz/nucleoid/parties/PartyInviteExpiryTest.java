@@ -0,0 +1,73 @@
+package xyz.nucleoid.parties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that invites expire on the timer wheel once their time to live has passed, and only then.
+ */
+final class PartyInviteExpiryTest {
+    private static final int TTL_TICKS = 10;
+
+    private final PlayerRef owner = TestServer.player(1);
+    private final PlayerRef invitee = TestServer.player(2);
+
+    private TestServer server;
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void expiresInviteAfterItsTimeToLive() {
+        var manager = this.start(TTL_TICKS);
+        manager.invitePlayer(this.owner, this.invitee);
+        var party = manager.getParty(this.owner);
+
+        this.server.tick(TTL_TICKS - 1);
+        assertTrue(manager.getInvitingParties(this.invitee).contains(party));
+
+        this.server.tick(1);
+        assertTrue(manager.getInvitingParties(this.invitee).isEmpty());
+        assertEquals(PartyError.NOT_INVITED, manager.acceptInvite(this.invitee, party).error());
+    }
+
+    @Test
+    void keepsMemberThatAcceptedBeforeTheInviteExpired() {
+        var manager = this.start(TTL_TICKS);
+        manager.invitePlayer(this.owner, this.invitee);
+        var party = manager.getParty(this.owner);
+
+        this.server.tick(TTL_TICKS / 2);
+        assertTrue(manager.acceptInvite(this.invitee, party).isOk());
+
+        this.server.tick(TTL_TICKS * 2);
+        assertTrue(party.contains(this.invitee));
+    }
+
+    @Test
+    void keepsInvitesWithoutATimeToLive() {
+        var manager = this.start(0);
+        manager.invitePlayer(this.owner, this.invitee);
+        var party = manager.getParty(this.owner);
+
+        this.server.tick(TTL_TICKS * 100);
+        assertTrue(manager.getInvitingParties(this.invitee).contains(party));
+        assertFalse(party.contains(this.invitee));
+        assertTrue(manager.acceptInvite(this.invitee, party).isOk());
+    }
+
+    private PartyManager start(int inviteTtlTicks) {
+        var defaults = PartyConfig.DEFAULT;
+        this.server = new TestServer(TestServer.config(0, inviteTtlTicks, defaults.queue(), defaults.rateLimit(), defaults.sweep()));
+        this.server.login(this.owner);
+        this.server.login(this.invitee);
+        return this.server.manager;
+    }
+}
@@ -0,0 +1,59 @@
+package xyz.nucleoid.parties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the invites indexed by invitee follow the invites held by the parties themselves.
+ */
+final class PartyInviteIndexTest {
+    private final TestServer server = new TestServer(TestServer.config());
+
+    private final PlayerRef first = TestServer.player(1);
+    private final PlayerRef second = TestServer.player(2);
+    private final PlayerRef invitee = TestServer.player(3);
+    private final PlayerRef other = TestServer.player(4);
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void indexesEveryPartyThatInvitedAPlayer() {
+        var manager = this.server.manager;
+        assertTrue(manager.invitePlayer(this.first, this.invitee).isOk());
+        assertTrue(manager.invitePlayer(this.second, this.invitee).isOk());
+        assertTrue(manager.invitePlayer(this.first, this.other).isOk());
+
+        var firstParty = manager.getParty(this.first);
+        var secondParty = manager.getParty(this.second);
+        assertEquals(Set.of(firstParty, secondParty), manager.getInvitingParties(this.invitee));
+        assertEquals(Set.of(firstParty), manager.getInvitingParties(this.other));
+    }
+
+    @Test
+    void dropsInvitesThatAreAcceptedOrWhosePartyIsGone() {
+        var manager = this.server.manager;
+        manager.invitePlayer(this.first, this.invitee);
+        manager.invitePlayer(this.second, this.invitee);
+        manager.invitePlayer(this.first, this.other);
+        var firstParty = manager.getParty(this.first);
+        var secondParty = manager.getParty(this.second);
+
+        assertTrue(manager.acceptInvite(this.invitee, firstParty).isOk());
+        assertEquals(Set.of(secondParty), manager.getInvitingParties(this.invitee));
+
+        assertTrue(manager.disband(this.first).isOk());
+        assertTrue(manager.getInvitingParties(this.other).isEmpty());
+
+        assertTrue(manager.disband(this.second).isOk());
+        assertTrue(manager.getInvitingParties(this.invitee).isEmpty());
+    }
+}
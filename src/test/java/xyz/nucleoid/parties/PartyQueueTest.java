@@ -0,0 +1,114 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that queued parties are packed largest first into the game space with the least room that still fits them,
+ * and that parties are queued and unqueued as their owners ask.
+ */
+final class PartyQueueTest {
+    private static final Identifier GAME = Identifier.of("test", "game");
+    private static final Identifier OTHER_GAME = Identifier.of("test", "other_game");
+
+    private final TestServer server = new TestServer(TestServer.config());
+
+    private final PlayerRef owner = TestServer.player(1);
+    private final PlayerRef member = TestServer.player(2);
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void packsLargestPartiesFirstIntoTheTightestSpace() {
+        var candidates = new ObjectArrayList<>(List.of("a1", "b3", "c4", "d2", "e3"));
+        int[] remaining = { 5, 7, 3 };
+        var placed = new ObjectArrayList<String>();
+
+        PartyQueue.bestFitDecreasing(candidates, PartyQueueTest::size, remaining, (candidate, space) -> {
+            placed.add(candidate + "@" + space);
+            return true;
+        });
+
+        // parties of the same size keep their queue order
+        assertEquals(List.of("c4@0", "b3@2", "e3@1", "d2@1", "a1@0"), placed);
+        assertArrayEquals(new int[] { 0, 2, 0 }, remaining);
+    }
+
+    @Test
+    void skipsPartiesThatFitNowhere() {
+        var candidates = new ObjectArrayList<>(List.of("a5", "b2"));
+        int[] remaining = { 4 };
+        var placed = new ObjectArrayList<String>();
+
+        PartyQueue.bestFitDecreasing(candidates, PartyQueueTest::size, remaining, (candidate, space) -> placed.add(candidate));
+
+        assertEquals(List.of("b2"), placed);
+        assertArrayEquals(new int[] { 2 }, remaining);
+    }
+
+    @Test
+    void treatsSpacesThatRefuseAPartyAsFull() {
+        var candidates = new ObjectArrayList<>(List.of("a3", "b2", "c1"));
+        int[] remaining = { 3, 8 };
+        var placed = new ObjectArrayList<String>();
+
+        PartyQueue.bestFitDecreasing(candidates, PartyQueueTest::size, remaining, (candidate, space) -> {
+            if (space == 0) {
+                return false;
+            }
+            placed.add(candidate + "@" + space);
+            return true;
+        });
+
+        assertEquals(List.of("b2@1", "c1@1"), placed);
+        assertArrayEquals(new int[] { 0, 5 }, remaining);
+    }
+
+    @Test
+    void queuesAndUnqueuesTheOwnersParty() {
+        var manager = this.server.manager;
+        manager.createParties(List.of(List.of(this.owner, this.member)));
+        var party = manager.getParty(this.owner);
+
+        assertTrue(manager.queueParty(this.owner, GAME).isOk());
+        assertEquals(GAME, manager.getQueuedGame(party));
+        assertEquals(PartyError.ALREADY_QUEUED, manager.queueParty(this.owner, GAME).error());
+        assertEquals(PartyError.DOES_NOT_EXIST, manager.unqueueParty(this.member).error());
+
+        // queueing for another game replaces the first
+        assertTrue(manager.queueParty(this.owner, OTHER_GAME).isOk());
+        assertEquals(OTHER_GAME, manager.getQueuedGame(party));
+
+        assertTrue(manager.unqueueParty(this.owner).isOk());
+        assertNull(manager.getQueuedGame(party));
+        assertEquals(PartyError.NOT_QUEUED, manager.unqueueParty(this.owner).error());
+    }
+
+    @Test
+    void forgetsTheQueueOfADisbandedParty() {
+        var manager = this.server.manager;
+        manager.createParties(List.of(List.of(this.owner, this.member)));
+        var party = manager.getParty(this.owner);
+        manager.queueParty(this.owner, GAME);
+
+        manager.disband(this.owner);
+        assertNull(manager.getQueuedGame(party));
+    }
+
+    private static int size(String candidate) {
+        return candidate.charAt(1) - '0';
+    }
+}
@@ -0,0 +1,90 @@
+package xyz.nucleoid.parties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that request buckets refill one token per refill interval, and that full buckets are evicted.
+ */
+final class PartyRateLimiterTest {
+    private static final int BURST = 2;
+    private static final int REFILL_TICKS = 10;
+    private static final int EVICT_TICKS = 50;
+
+    private static final PartyConfig.RateLimit LIMIT = new PartyConfig.RateLimit(
+            true,
+            new PartyConfig.RateLimit.Bucket(BURST, REFILL_TICKS),
+            new PartyConfig.RateLimit.Bucket(BURST, REFILL_TICKS),
+            new PartyConfig.RateLimit.Bucket(BURST, REFILL_TICKS),
+            EVICT_TICKS
+    );
+
+    private final TestServer server = new TestServer(TestServer.config(0, 0, PartyConfig.DEFAULT.queue(), LIMIT, PartyConfig.DEFAULT.sweep()));
+
+    private final PlayerRef sender = TestServer.player(1);
+    private final PlayerRef target = TestServer.player(2);
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        for (int i = 0; i < BURST; i++) {
+            assertFalse(this.invite(this.sender, TestServer.player(100 + i)));
+        }
+        assertTrue(this.invite(this.sender, TestServer.player(200)));
+
+        this.server.tick(REFILL_TICKS - 1);
+        assertTrue(this.invite(this.sender, TestServer.player(200)));
+
+        this.server.tick(1);
+        assertFalse(this.invite(this.sender, TestServer.player(200)));
+        assertTrue(this.invite(this.sender, TestServer.player(201)));
+    }
+
+    @Test
+    void protectsTargetsWithoutChargingTurnedDownSenders() {
+        for (int i = 0; i < BURST; i++) {
+            assertFalse(this.invite(TestServer.player(100 + i), this.target));
+        }
+
+        assertTrue(this.invite(this.sender, this.target));
+        // the sender was turned down because of the target, so it still has its whole burst
+        for (int i = 0; i < BURST; i++) {
+            assertFalse(this.invite(this.sender, TestServer.player(200 + i)));
+        }
+    }
+
+    @Test
+    void evictsBucketsOnceTheyAreFullAgain() {
+        var limiter = new PartyRateLimiter(LIMIT);
+        limiter.tryAcquire(PartyRateLimiter.Action.KICK, this.sender, this.target);
+        for (int i = 0; i < EVICT_TICKS - 5; i++) {
+            limiter.tick();
+        }
+
+        // drained just before the eviction, so that it cannot be full again in time
+        var drained = TestServer.player(3);
+        for (int i = 0; i < BURST; i++) {
+            assertTrue(limiter.tryAcquire(PartyRateLimiter.Action.KICK, drained, null));
+        }
+        assertEquals(3, limiter.size());
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tick();
+        }
+        assertEquals(1, limiter.size());
+        assertFalse(limiter.tryAcquire(PartyRateLimiter.Action.KICK, drained, null));
+    }
+
+    private boolean invite(PlayerRef sender, PlayerRef target) {
+        return this.server.manager.isRateLimited(PartyRateLimiter.Action.INVITE, sender, target);
+    }
+}
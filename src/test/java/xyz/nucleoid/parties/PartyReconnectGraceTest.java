@@ -0,0 +1,77 @@
+package xyz.nucleoid.parties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that disconnected members keep their place for the reconnect grace, and are removed on the timer wheel once
+ * it has passed.
+ */
+final class PartyReconnectGraceTest {
+    private static final int GRACE_TICKS = 10;
+
+    private final PlayerRef owner = TestServer.player(1);
+    private final PlayerRef member = TestServer.player(2);
+
+    private TestServer server;
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void removesMemberOnceTheGraceHasPassed() {
+        var party = this.start(GRACE_TICKS);
+
+        this.server.logout(this.member);
+        assertTrue(this.server.manager.isAwaitingReconnect(this.member));
+
+        this.server.tick(GRACE_TICKS - 1);
+        assertTrue(party.contains(this.member));
+
+        this.server.tick(1);
+        assertFalse(party.contains(this.member));
+        assertFalse(this.server.manager.isAwaitingReconnect(this.member));
+        assertNull(this.server.manager.getParty(this.member));
+    }
+
+    @Test
+    void keepsMemberThatReconnectsWithinTheGrace() {
+        var party = this.start(GRACE_TICKS);
+
+        this.server.logout(this.member);
+        this.server.tick(GRACE_TICKS / 2);
+        this.server.login(this.member);
+        assertFalse(this.server.manager.isAwaitingReconnect(this.member));
+
+        this.server.tick(GRACE_TICKS * 2);
+        assertSame(party, this.server.manager.getParty(this.member));
+    }
+
+    @Test
+    void removesMemberOnTheNextTickWithoutAGrace() {
+        var party = this.start(0);
+
+        this.server.logout(this.member);
+        this.server.tick(1);
+        assertFalse(party.contains(this.member));
+    }
+
+    private Party start(int reconnectGraceTicks) {
+        var defaults = PartyConfig.DEFAULT;
+        this.server = new TestServer(TestServer.config(reconnectGraceTicks, 0, defaults.queue(), defaults.rateLimit(), defaults.sweep()));
+        this.server.login(this.owner);
+        this.server.login(this.member);
+        this.server.manager.createParties(List.of(List.of(this.owner, this.member)));
+        return this.server.manager.getParty(this.owner);
+    }
+}
@@ -0,0 +1,123 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pages through the parties of a headless manager, both at once and a chunk at a time on the work scheduler, and checks
+ * that every matching party is listed once and in order of its UUID.
+ */
+final class PartyScanTest {
+    private static final int PAGE_SIZE = 7;
+    private static final int CHUNK_SIZE = PartyConfig.Scheduler.DEFAULT.chunkSize();
+
+    private final TestServer server = new TestServer(TestServer.config());
+
+    private final List<Party> parties = this.createParties(3 * CHUNK_SIZE);
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void listsEveryMatchingPartyOnceInOrder() {
+        Predicate<Party> filter = party -> party.getMembers().size() == 2;
+
+        assertEquals(this.expected(filter), this.pageThrough(filter));
+        assertEquals(this.expected(party -> true), this.pageThrough(party -> true));
+    }
+
+    @Test
+    void skipsMatchingPartiesBeforeThePage() {
+        var page = this.server.manager.getParties(null, 3, PAGE_SIZE, party -> true);
+
+        assertEquals(this.expected(party -> true).subList(3, 3 + PAGE_SIZE), page.parties());
+        assertEquals(page.parties().get(PAGE_SIZE - 1).getUuid(), page.next());
+    }
+
+    @Test
+    void scansTheSamePagesAChunkAtATime() {
+        // pages larger than a chunk, so that every scan picks up where a chunk stopped
+        Predicate<Party> filter = party -> true;
+        int limit = CHUNK_SIZE * 3 / 2;
+        var pages = new ObjectArrayList<PartyManager.Page>();
+
+        UUID after = null;
+        do {
+            var page = this.scan(after, limit, filter);
+            assertEquals(this.server.manager.getParties(after, 0, limit, filter), page);
+            pages.add(page);
+            after = page.next();
+        } while (after != null);
+
+        var scanned = new ObjectArrayList<Party>();
+        pages.forEach(page -> scanned.addAll(page.parties()));
+        assertEquals(this.expected(filter), scanned);
+    }
+
+    @Test
+    void endsWithAnEmptyPageAfterTheLastParty() {
+        var all = this.expected(party -> true);
+        var last = all.get(all.size() - 1).getUuid();
+
+        var page = this.server.manager.getParties(last, 0, PAGE_SIZE, party -> true);
+        assertEquals(List.of(), page.parties());
+        assertNull(page.next());
+    }
+
+    private List<Party> pageThrough(Predicate<Party> filter) {
+        var listed = new ObjectArrayList<Party>();
+        UUID after = null;
+        do {
+            var page = this.server.manager.getParties(after, 0, PAGE_SIZE, filter);
+            listed.addAll(page.parties());
+            after = page.next();
+        } while (after != null);
+        return listed;
+    }
+
+    private PartyManager.Page scan(@Nullable UUID after, int limit, Predicate<Party> filter) {
+        var result = new ObjectArrayList<PartyManager.Page>(1);
+        this.server.manager.scanParties(after, 0, limit, filter, result::add);
+
+        this.server.tick(1);
+        assertEquals(1, result.size());
+        assertNotNull(result.get(0));
+        return result.get(0);
+    }
+
+    private List<Party> expected(Predicate<Party> filter) {
+        var expected = new ObjectArrayList<Party>();
+        for (var party : this.parties) {
+            if (filter.test(party)) {
+                expected.add(party);
+            }
+        }
+        expected.sort(Comparator.comparing(Party::getUuid));
+        return expected;
+    }
+
+    private List<Party> createParties(int count) {
+        var parties = new ObjectArrayList<Party>(count);
+        for (int i = 0; i < count; i++) {
+            var owner = TestServer.player(2 * i + 1);
+            // every third party has a second member, so that filters match some parties but not others
+            var members = i % 3 == 0 ? List.of(owner, TestServer.player(2 * i + 2)) : List.of(owner);
+            this.server.manager.createParties(List.of(members));
+            parties.add(this.server.manager.getParty(owner));
+        }
+        return parties;
+    }
+}
@@ -0,0 +1,91 @@
+package xyz.nucleoid.parties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves the parties of one headless manager and restores them into another, as across a server restart.
+ */
+final class PartyStorageTest {
+    private final TestServer before = new TestServer(TestServer.config());
+    private final TestServer after = new TestServer(TestServer.config());
+
+    private final PlayerRef owner = TestServer.player(1);
+    private final PlayerRef member = TestServer.player(2);
+    private final PlayerRef invitee = TestServer.player(3);
+
+    @AfterEach
+    void close() {
+        this.before.close();
+        this.after.close();
+    }
+
+    @Test
+    void restoresPartiesAsTheyWereSaved() throws IOException {
+        var party = this.createParty();
+
+        this.after.login(this.owner);
+        this.after.login(this.member);
+        var restored = this.after.manager.getParty(this.restore(party).uuid());
+
+        assertNotNull(restored);
+        assertEquals(this.member, restored.getOwner());
+        assertEquals(Set.copyOf(party.getMembers()), Set.copyOf(restored.getMembers()));
+        assertEquals(6, restored.getCapacity());
+        assertTrue(this.after.manager.getInvitingParties(this.invitee).contains(restored));
+        assertTrue(this.after.manager.acceptInvite(this.invitee, restored).isOk());
+    }
+
+    @Test
+    void removesRestoredMembersThatAreOffline() throws IOException {
+        var party = this.createParty();
+
+        this.after.login(this.member);
+        var restored = this.after.manager.getParty(this.restore(party).uuid());
+        assertTrue(restored.contains(this.owner));
+
+        this.after.tick(1);
+        assertFalse(restored.contains(this.owner));
+        assertTrue(restored.contains(this.member));
+    }
+
+    @Test
+    void rejectsTruncatedSnapshots() {
+        var party = this.createParty();
+        var buffer = PartyStorage.encode(List.of(PartyStorage.Entry.of(party)));
+        buffer.limit(buffer.limit() - 1);
+
+        assertThrows(IOException.class, () -> PartyStorage.decode(buffer));
+    }
+
+    private Party createParty() {
+        var manager = this.before.manager;
+        manager.createParties(List.of(List.of(this.owner, this.member)));
+        manager.invitePlayer(this.owner, this.invitee);
+        manager.transferParty(this.owner, this.member);
+
+        var party = manager.getParty(this.owner);
+        manager.setCapacity(party, 6);
+        return party;
+    }
+
+    private PartyStorage.Entry restore(Party party) throws IOException {
+        var entries = PartyStorage.decode(PartyStorage.encode(List.of(PartyStorage.Entry.of(party))));
+        assertEquals(1, entries.size());
+
+        var entry = entries.get(0);
+        assertNotNull(this.after.manager.restoreParty(entry));
+        return entry;
+    }
+}
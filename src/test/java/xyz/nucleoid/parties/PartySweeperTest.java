@@ -0,0 +1,83 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the sweep reclaims parties left with only their owner, a few parties per tick, and leaves every other
+ * party alone.
+ */
+final class PartySweeperTest {
+    private static final int SOLO_TICKS = 20;
+    private static final int PARTIES_PER_TICK = 2;
+
+    private final PlayerRef owner = TestServer.player(1);
+    private final PlayerRef member = TestServer.player(2);
+
+    private TestServer server;
+
+    @AfterEach
+    void close() {
+        this.server.close();
+    }
+
+    @Test
+    void reclaimsEverySoloPartyOnceItTimesOut() {
+        this.start(SOLO_TICKS);
+        var owners = new ObjectArrayList<PlayerRef>();
+        for (int i = 0; i < 5 * PARTIES_PER_TICK; i++) {
+            owners.add(TestServer.player(100 + i));
+        }
+        for (var owner : owners) {
+            this.server.manager.createParties(List.of(List.of(owner)));
+        }
+
+        this.server.tick(SOLO_TICKS);
+        assertEquals(owners.size(), this.server.manager.getPartyCount());
+
+        // every party is visited once per pass over all of them, so each is reclaimed within one pass of timing out
+        this.server.tick(owners.size() / PARTIES_PER_TICK);
+        assertEquals(0, this.server.manager.getPartyCount());
+    }
+
+    @Test
+    void keepsPartiesThatAreStillInUse() {
+        this.start(SOLO_TICKS);
+        var manager = this.server.manager;
+        manager.createParties(List.of(List.of(this.owner, this.member)));
+        var inviter = TestServer.player(3);
+        manager.invitePlayer(inviter, TestServer.player(4));
+
+        this.server.tick(SOLO_TICKS * 3);
+        assertNotNull(manager.getParty(this.owner));
+        assertNotNull(manager.getParty(inviter));
+
+        // once the member leaves, the owner is left alone
+        manager.leaveParty(this.member);
+        this.server.tick(SOLO_TICKS * 2);
+        assertNull(manager.getParty(this.owner));
+    }
+
+    @Test
+    void keepsSoloPartiesWithoutATimeout() {
+        this.start(0);
+        this.server.manager.createParties(List.of(List.of(this.owner)));
+
+        this.server.tick(SOLO_TICKS * 10);
+        assertNotNull(this.server.manager.getParty(this.owner));
+    }
+
+    private void start(int soloTimeoutTicks) {
+        var defaults = PartyConfig.DEFAULT;
+        var sweep = new PartyConfig.Sweep(soloTimeoutTicks, PARTIES_PER_TICK);
+        this.server = new TestServer(TestServer.config(0, 0, defaults.queue(), defaults.rateLimit(), sweep));
+    }
+}
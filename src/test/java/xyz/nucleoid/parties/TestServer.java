@@ -0,0 +1,99 @@
+package xyz.nucleoid.parties;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A headless {@link PartyManager} whose players log in and out as the test tells it to.
+ */
+final class TestServer implements PartyPresence, AutoCloseable {
+    final PartyManager manager;
+    private final Set<UUID> online = new ObjectOpenHashSet<>();
+
+    TestServer(PartyConfig config) {
+        this.manager = PartyManager.headless(this, config);
+    }
+
+    /**
+     * @return the defaults, with everything that touches the disk or the clock turned off
+     */
+    static PartyConfig config(int reconnectGraceTicks, int inviteTtlTicks, PartyConfig.Queue queue, PartyConfig.RateLimit rateLimit, PartyConfig.Sweep sweep) {
+        var defaults = PartyConfig.DEFAULT;
+        return new PartyConfig(
+                reconnectGraceTicks,
+                inviteTtlTicks,
+                defaults.defaultCapacity(),
+                Map.of(),
+                defaults.listPageSize(),
+                new PartyConfig.EventLog(false, 1, Map.of()),
+                new PartyConfig.Persistence(false, defaults.persistence().saveIntervalTicks()),
+                queue,
+                defaults.teamBalancing(),
+                defaults.federation(),
+                defaults.journal(),
+                rateLimit,
+                sweep,
+                new PartyConfig.Scheduler(0, defaults.scheduler().chunkSize())
+        );
+    }
+
+    static PartyConfig config() {
+        var defaults = PartyConfig.DEFAULT;
+        return config(defaults.reconnectGraceTicks(), defaults.inviteTtlTicks(), defaults.queue(), defaults.rateLimit(), defaults.sweep());
+    }
+
+    static PlayerRef player(int id) {
+        return new PlayerRef(new UUID(0, id));
+    }
+
+    void login(PlayerRef player) {
+        this.online.add(player.id());
+        this.manager.onPlayerJoin(player, null);
+    }
+
+    void logout(PlayerRef player) {
+        this.online.remove(player.id());
+        this.manager.onPlayerLogOut(player, this.getName(player));
+    }
+
+    void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            this.manager.tick();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.manager.close();
+    }
+
+    @Override
+    @Nullable
+    public MinecraftServer getServer() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public ServerPlayerEntity getPlayer(UUID id) {
+        return null;
+    }
+
+    @Override
+    public boolean isOnline(UUID id) {
+        return this.online.contains(id);
+    }
+
+    @Override
+    public Text getName(PlayerRef player) {
+        return Text.literal(player.id().toString());
+    }
+}